@@ -18,8 +18,8 @@
 package cn.edu.hfut.dmic.contentextractor;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -31,7 +31,7 @@ import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
 import org.jsoup.select.Elements;
-import org.jsoup.select.NodeVisitor;
+import org.jsoup.select.NodeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,118 +45,192 @@ public class ContentExtractor {
     public static final Logger LOG = LoggerFactory.getLogger(ContentExtractor.class);
 
     protected Document doc;
+    // 为true时抽取前删除script、style等节点，为false时遍历中跳过这些节点，不修改Document
+    protected boolean clean = true;
+
+    protected static final HashSet<String> IGNORED_TAGS = new HashSet<String>(
+            Arrays.asList("script", "noscript", "style", "iframe", "br"));
 
     ContentExtractor(Document doc) {
         this.doc = doc;
     }
 
-    protected HashMap<Element, CountInfo> infoMap = new HashMap<Element, CountInfo>();
+    ContentExtractor(Document doc, boolean clean) {
+        this.doc = doc;
+        this.clean = clean;
+    }
 
-    class CountInfo {
+    /*
+     * 每个Element按先序遍历的顺序编号，统计信息保存在以编号为下标的数组中，
+     * 叶子(文本节点)长度的方差用个数、和、平方和计算，不保存叶子列表
+     */
+    protected ArrayList<Element> elements = new ArrayList<Element>();
+    protected int[] textCounts;
+    protected int[] linkTextCounts;
+    protected int[] tagCounts;
+    protected int[] linkTagCounts;
+    protected int[] pCounts;
+    protected double[] densities;
+    protected double[] densitySums;
+    protected int[] leafCounts;
+    protected long[] leafSums;
+    protected double[] leafSquareSums;
 
-        int textCount = 0;
-        int linkTextCount = 0;
-        int tagCount = 0;
-        int linkTagCount = 0;
-        double density = 0;
-        double densitySum = 0;
-        double score = 0;
-        int pCount = 0;
-        ArrayList<Integer> leafList = new ArrayList<Integer>();
+    protected void clean() {
+        doc.select("script,noscript,style,iframe,br").remove();
+    }
 
+    /**
+     * 不修改Document时，遍历中需要跳过的节点
+     */
+    protected boolean isIgnored(Node node) {
+        return !clean && node instanceof Element && IGNORED_TAGS.contains(((Element) node).tagName());
     }
 
-    protected void clean() {
-        doc.select("script,noscript,style,iframe,br").remove();
+    private void ensureCapacity(int capacity) {
+        if (textCounts != null && textCounts.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, textCounts == null ? 256 : textCounts.length * 2);
+        textCounts = copyOf(textCounts, newCapacity);
+        linkTextCounts = copyOf(linkTextCounts, newCapacity);
+        tagCounts = copyOf(tagCounts, newCapacity);
+        linkTagCounts = copyOf(linkTagCounts, newCapacity);
+        pCounts = copyOf(pCounts, newCapacity);
+        leafCounts = copyOf(leafCounts, newCapacity);
+        densities = copyOf(densities, newCapacity);
+        densitySums = copyOf(densitySums, newCapacity);
+        leafSquareSums = copyOf(leafSquareSums, newCapacity);
+        leafSums = leafSums == null ? new long[newCapacity] : Arrays.copyOf(leafSums, newCapacity);
     }
 
-    protected CountInfo computeInfo(Node node) {
+    private static int[] copyOf(int[] array, int length) {
+        return array == null ? new int[length] : Arrays.copyOf(array, length);
+    }
 
-        if (node instanceof Element) {
-            Element tag = (Element) node;
+    private static double[] copyOf(double[] array, int length) {
+        return array == null ? new double[length] : Arrays.copyOf(array, length);
+    }
 
-            CountInfo countInfo = new CountInfo();
-            for (Node childNode : tag.childNodes()) {
-                CountInfo childCountInfo = computeInfo(childNode);
-                countInfo.textCount += childCountInfo.textCount;
-                countInfo.linkTextCount += childCountInfo.linkTextCount;
-                countInfo.tagCount += childCountInfo.tagCount;
-                countInfo.linkTagCount += childCountInfo.linkTagCount;
-                countInfo.leafList.addAll(childCountInfo.leafList);
-                countInfo.densitySum += childCountInfo.density;
-                countInfo.pCount += childCountInfo.pCount;
-            }
-            countInfo.tagCount++;
-            String tagName = tag.tagName();
-            if (tagName.equals("a")) {
-                countInfo.linkTextCount = countInfo.textCount;
-                countInfo.linkTagCount++;
-            } else if (tagName.equals("p")) {
-                countInfo.pCount++;
+    /**
+     * 一次后序遍历计算所有Element的统计信息
+     * 进入Element时分配编号并压栈，离开时计算密度并累加到父节点
+     */
+    protected void computeInfo(Element root) {
+        elements.clear();
+        ensureCapacity(256);
+        final int[][] stackHolder = {new int[64]};
+        final int[] depth = {0};
+        root.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int i) {
+                if (isIgnored(node)) {
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                if (node instanceof Element) {
+                    int ordinal = elements.size();
+                    elements.add((Element) node);
+                    ensureCapacity(ordinal + 1);
+                    textCounts[ordinal] = 0;
+                    linkTextCounts[ordinal] = 0;
+                    tagCounts[ordinal] = 0;
+                    linkTagCounts[ordinal] = 0;
+                    pCounts[ordinal] = 0;
+                    leafCounts[ordinal] = 0;
+                    leafSums[ordinal] = 0;
+                    leafSquareSums[ordinal] = 0;
+                    densities[ordinal] = 0;
+                    densitySums[ordinal] = 0;
+                    if (depth[0] == stackHolder[0].length) {
+                        stackHolder[0] = Arrays.copyOf(stackHolder[0], depth[0] * 2);
+                    }
+                    stackHolder[0][depth[0]++] = ordinal;
+                } else if (node instanceof TextNode && depth[0] > 0) {
+                    int parent = stackHolder[0][depth[0] - 1];
+                    int len = ((TextNode) node).text().length();
+                    textCounts[parent] += len;
+                    leafCounts[parent]++;
+                    leafSums[parent] += len;
+                    leafSquareSums[parent] += (double) len * len;
+                }
+                return FilterResult.CONTINUE;
             }
 
-            int pureLen = countInfo.textCount - countInfo.linkTextCount;
-            int len = countInfo.tagCount - countInfo.linkTagCount;
-            if (pureLen == 0 || len == 0) {
-                countInfo.density = 0;
-            } else {
-                countInfo.density = (pureLen + 0.0) / len;
-            }
+            @Override
+            public FilterResult tail(Node node, int i) {
+                if (!(node instanceof Element)) {
+                    return FilterResult.CONTINUE;
+                }
+                int ordinal = stackHolder[0][--depth[0]];
+                tagCounts[ordinal]++;
+                String tagName = ((Element) node).tagName();
+                if (tagName.equals("a")) {
+                    linkTextCounts[ordinal] = textCounts[ordinal];
+                    linkTagCounts[ordinal]++;
+                } else if (tagName.equals("p")) {
+                    pCounts[ordinal]++;
+                }
 
-            infoMap.put(tag, countInfo);
-
-            return countInfo;
-        } else if (node instanceof TextNode) {
-            TextNode tn = (TextNode) node;
-            CountInfo countInfo = new CountInfo();
-            String text = tn.text();
-            int len = text.length();
-            countInfo.textCount = len;
-            countInfo.leafList.add(len);
-            return countInfo;
-        } else {
-            return new CountInfo();
-        }
+                int pureLen = textCounts[ordinal] - linkTextCounts[ordinal];
+                int len = tagCounts[ordinal] - linkTagCounts[ordinal];
+                if (pureLen == 0 || len == 0) {
+                    densities[ordinal] = 0;
+                } else {
+                    densities[ordinal] = (pureLen + 0.0) / len;
+                }
+
+                if (depth[0] > 0) {
+                    int parent = stackHolder[0][depth[0] - 1];
+                    textCounts[parent] += textCounts[ordinal];
+                    linkTextCounts[parent] += linkTextCounts[ordinal];
+                    tagCounts[parent] += tagCounts[ordinal];
+                    linkTagCounts[parent] += linkTagCounts[ordinal];
+                    pCounts[parent] += pCounts[ordinal];
+                    leafCounts[parent] += leafCounts[ordinal];
+                    leafSums[parent] += leafSums[ordinal];
+                    leafSquareSums[parent] += leafSquareSums[ordinal];
+                    densitySums[parent] += densities[ordinal];
+                }
+                return FilterResult.CONTINUE;
+            }
+        });
     }
 
-    protected double computeScore(Element tag) {
-        CountInfo countInfo = infoMap.get(tag);
-        double var = Math.sqrt(computeVar(countInfo.leafList) + 1);
-        double score = Math.log(var) * countInfo.densitySum * Math.log(countInfo.textCount - countInfo.linkTextCount + 1) * Math.log10(countInfo.pCount + 2);
+    protected double computeScore(int ordinal) {
+        double var = Math.sqrt(computeVar(leafCounts[ordinal], leafSums[ordinal], leafSquareSums[ordinal]) + 1);
+        double score = Math.log(var) * densitySums[ordinal] * Math.log(textCounts[ordinal] - linkTextCounts[ordinal] + 1) * Math.log10(pCounts[ordinal] + 2);
         return score;
     }
 
-    protected double computeVar(ArrayList<Integer> data) {
-        if (data.size() == 0) {
+    /**
+     * 根据个数、和、平方和计算方差
+     */
+    protected double computeVar(int count, long sum, double squareSum) {
+        if (count == 0) {
             return 0;
         }
-        if (data.size() == 1) {
-            return data.get(0) / 2;
-        }
-        double sum = 0;
-        for (Integer i : data) {
-            sum += i;
+        if (count == 1) {
+            return sum / 2;
         }
-        double ave = sum / data.size();
-        sum = 0;
-        for (Integer i : data) {
-            sum += (i - ave) * (i - ave);
-        }
-        sum = sum / data.size();
-        return sum;
+        double ave = (sum + 0.0) / count;
+        double var = squareSum / count - ave * ave;
+        return var > 0 ? var : 0;
     }
 
     public Element getContentElement() throws Exception {
-        clean();
+        if (clean) {
+            clean();
+        }
         computeInfo(doc.body());
         double maxScore = 0;
         Element content = null;
-        for (Map.Entry<Element, CountInfo> entry : infoMap.entrySet()) {
-            Element tag = entry.getKey();
-            if (tag.tagName().equals("a") || tag == doc.body()) {
+        Element body = doc.body();
+        for (int i = 0; i < elements.size(); i++) {
+            Element tag = elements.get(i);
+            if (tag.tagName().equals("a") || tag == body) {
                 continue;
             }
-            double score = computeScore(tag);
+            double score = computeScore(i);
             if (score > maxScore) {
                 maxScore = score;
                 content = tag;
@@ -174,6 +248,12 @@ public class ContentExtractor {
         try {
             contentElement = getContentElement();
             news.setContentElement(contentElement);
+            if (!clean) {
+                // 正文文本不包含被跳过的节点，只复制正文所在的子树，不修改doc
+                Element contentCopy = contentElement.clone();
+                contentCopy.select("script,noscript,style,iframe,br").remove();
+                news.setContent(contentCopy.text());
+            }
         } catch (Exception ex) {
             LOG.info("news content extraction failed,extraction abort", ex);
             throw new Exception(ex);
@@ -260,6 +340,16 @@ public class ContentExtractor {
     }
 
     protected double strSim(String a, String b) {
+        return strSim(a, b, 0);
+    }
+
+    /**
+     * 基于最长公共子序列的相似度
+     * 长度相差3倍以上时直接返回0，不计算LCS
+     *
+     * @param minSim 只关心大于minSim的结果，达不到时可以提前结束并返回0
+     */
+    protected double strSim(String a, String b, double minSim) {
         int len1 = a.length();
         int len2 = b.length();
         if (len1 == 0 || len2 == 0) {
@@ -274,7 +364,17 @@ public class ContentExtractor {
         if (ratio >= 3) {
             return 0;
         }
-        return (lcs(a, b) + 0.0) / Math.max(len1, len2);
+        int maxLen = Math.max(len1, len2);
+        // lcs至少为minLcs时相似度才可能大于minSim
+        int minLcs = (int) Math.floor(minSim * maxLen) + 1;
+        if (minSim <= 0) {
+            minLcs = 0;
+        }
+        int lcs = lcs(a, b, minLcs);
+        if (lcs < minLcs) {
+            return 0;
+        }
+        return (lcs + 0.0) / maxLen;
     }
 
     protected String getTitle(final Element contentElement) throws Exception {
@@ -283,27 +383,33 @@ public class ContentExtractor {
         final AtomicInteger contentIndex = new AtomicInteger();
         final String metaTitle = doc.title().trim();
         if (!metaTitle.isEmpty()) {
-            doc.body().traverse(new NodeVisitor() {
+            doc.body().filter(new NodeFilter() {
                 @Override
-                public void head(Node node, int i) {
+                public FilterResult head(Node node, int i) {
+                    if (isIgnored(node)) {
+                        return FilterResult.SKIP_ENTIRELY;
+                    }
                     if (node instanceof Element) {
                         Element tag = (Element) node;
                         if (tag == contentElement) {
                             contentIndex.set(titleList.size());
-                            return;
+                            return FilterResult.CONTINUE;
                         }
                         String tagName = tag.tagName();
-                        if (Pattern.matches("h[1-6]", tagName)) {
+                        if (tagName.length() == 2 && tagName.charAt(0) == 'h'
+                                && tagName.charAt(1) >= '1' && tagName.charAt(1) <= '6') {
                             String title = tag.text().trim();
                             double sim = strSim(title, metaTitle);
                             titleSim.add(sim);
                             titleList.add(tag);
                         }
                     }
+                    return FilterResult.CONTINUE;
                 }
 
                 @Override
-                public void tail(Node node, int i) {
+                public FilterResult tail(Node node, int i) {
+                    return FilterResult.CONTINUE;
                 }
             });
             int index = contentIndex.get();
@@ -344,14 +450,17 @@ public class ContentExtractor {
         final ArrayList<Double> max = new ArrayList<Double>();
         max.add(0.0);
         final StringBuilder sb = new StringBuilder();
-        doc.body().traverse(new NodeVisitor() {
+        doc.body().filter(new NodeFilter() {
 
-            public void head(Node node, int i) {
+            public FilterResult head(Node node, int i) {
+                if (isIgnored(node)) {
+                    return FilterResult.SKIP_ENTIRELY;
+                }
 
                 if (node instanceof TextNode) {
                     TextNode tn = (TextNode) node;
                     String text = tn.text().trim();
-                    double sim = strSim(text, metaTitle);
+                    double sim = strSim(text, metaTitle, max.get(0));
                     if (sim > 0) {
                         if (sim > max.get(0)) {
                             max.set(0, sim);
@@ -361,9 +470,11 @@ public class ContentExtractor {
                     }
 
                 }
+                return FilterResult.CONTINUE;
             }
 
-            public void tail(Node node, int i) {
+            public FilterResult tail(Node node, int i) {
+                return FilterResult.CONTINUE;
             }
         });
         if (sb.length() > 0) {
@@ -373,63 +484,123 @@ public class ContentExtractor {
 
     }
 
+    // lcs和editDistance复用的两行数组，长度为较短字符串的长度加1
+    private int[] previousRow = new int[0];
+    private int[] currentRow = new int[0];
+
+    private void ensureRows(int length) {
+        if (previousRow.length < length) {
+            previousRow = new int[length];
+            currentRow = new int[length];
+        }
+    }
+
     protected int lcs(String x, String y) {
+        return lcs(x, y, 0);
+    }
 
+    /**
+     * 最长公共子序列的长度，只保存两行，空间为O(min(M,N))
+     *
+     * @param minLcs 剩余部分全部匹配也达不到minLcs时提前结束，返回值小于minLcs
+     */
+    protected int lcs(String x, String y, int minLcs) {
+        if (x.length() < y.length()) {
+            String tmp = x;
+            x = y;
+            y = tmp;
+        }
         int M = x.length();
         int N = y.length();
-        if (M == 0 || N == 0) {
+        if (N == 0 || N < minLcs) {
             return 0;
         }
-        int[][] opt = new int[M + 1][N + 1];
-
-        for (int i = M - 1; i >= 0; i--) {
-            for (int j = N - 1; j >= 0; j--) {
-                if (x.charAt(i) == y.charAt(j)) {
-                    opt[i][j] = opt[i + 1][j + 1] + 1;
+        ensureRows(N + 1);
+        int[] prev = previousRow;
+        int[] cur = currentRow;
+        Arrays.fill(prev, 0, N + 1, 0);
+        cur[0] = 0;
+
+        for (int i = 0; i < M; i++) {
+            char c = x.charAt(i);
+            for (int j = 0; j < N; j++) {
+                if (c == y.charAt(j)) {
+                    cur[j + 1] = prev[j] + 1;
                 } else {
-                    opt[i][j] = Math.max(opt[i + 1][j], opt[i][j + 1]);
+                    cur[j + 1] = Math.max(prev[j + 1], cur[j]);
                 }
             }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+            // 之后的每个字符最多使lcs加1
+            if (prev[N] + (M - i - 1) < minLcs) {
+                return prev[N];
+            }
         }
-
-        return opt[0][0];
-
+        return prev[N];
     }
 
     protected int editDistance(String word1, String word2) {
+        return editDistance(word1, word2, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 编辑距离，只保存两行，空间为O(min(M,N))
+     *
+     * @param maxDistance 距离一定大于maxDistance时提前结束，返回maxDistance + 1
+     */
+    protected int editDistance(String word1, String word2, int maxDistance) {
+        if (word1.length() < word2.length()) {
+            String tmp = word1;
+            word1 = word2;
+            word2 = tmp;
+        }
         int len1 = word1.length();
         int len2 = word2.length();
-
-        int[][] dp = new int[len1 + 1][len2 + 1];
-
-        for (int i = 0; i <= len1; i++) {
-            dp[i][0] = i;
+        if (len1 - len2 > maxDistance) {
+            return maxDistance + 1;
         }
+        ensureRows(len2 + 1);
+        int[] prev = previousRow;
+        int[] cur = currentRow;
 
         for (int j = 0; j <= len2; j++) {
-            dp[0][j] = j;
+            prev[j] = j;
         }
 
         for (int i = 0; i < len1; i++) {
             char c1 = word1.charAt(i);
+            cur[0] = i + 1;
+            int rowMin = cur[0];
             for (int j = 0; j < len2; j++) {
                 char c2 = word2.charAt(j);
 
                 if (c1 == c2) {
-                    dp[i + 1][j + 1] = dp[i][j];
+                    cur[j + 1] = prev[j];
                 } else {
-                    int replace = dp[i][j] + 1;
-                    int insert = dp[i][j + 1] + 1;
-                    int delete = dp[i + 1][j] + 1;
+                    int replace = prev[j] + 1;
+                    int insert = prev[j + 1] + 1;
+                    int delete = cur[j] + 1;
 
                     int min = replace > insert ? insert : replace;
                     min = delete > min ? min : delete;
-                    dp[i + 1][j + 1] = min;
+                    cur[j + 1] = min;
+                }
+                if (cur[j + 1] < rowMin) {
+                    rowMin = cur[j + 1];
                 }
             }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+            // 每一行的最小值不会减小
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
         }
 
-        return dp[len1][len2];
+        return prev[len2] > maxDistance ? maxDistance + 1 : prev[len2];
     }
 
     /*输入Jsoup的Document，获取正文所在Element*/
@@ -438,6 +609,12 @@ public class ContentExtractor {
         return ce.getContentElement();
     }
 
+    /*输入Jsoup的Document，获取正文所在Element，clean为false时不修改doc*/
+    public static Element getContentElementByDoc(Document doc, boolean clean) throws Exception {
+        ContentExtractor ce = new ContentExtractor(doc, clean);
+        return ce.getContentElement();
+    }
+
     /*输入HTML，获取正文所在Element*/
     public static Element getContentElementByHtml(String html) throws Exception {
         Document doc = Jsoup.parse(html);
@@ -491,6 +668,12 @@ public class ContentExtractor {
         return ce.getNews();
     }
 
+    /*输入Jsoup的Document，获取结构化新闻信息，clean为false时不修改doc，doc可以继续用于其他解析*/
+    public static News getNewsByDoc(Document doc, boolean clean) throws Exception {
+        ContentExtractor ce = new ContentExtractor(doc, clean);
+        return ce.getNews();
+    }
+
     /*输入HTML，获取结构化新闻信息*/
     public static News getNewsByHtml(String html) throws Exception {
         Document doc = Jsoup.parse(html);
@@ -38,6 +38,21 @@ public class Configuration{
     public static final String KEY_EXECUTE_INTERVAL = "EXECUTE_INTERVAL";
     public static final String KEY_THREAD_KILLER = "THREAD_KILLER";
     public static final String KEY_WAIT_THREAD_END_TIME = "WAIT_THREAD_END_TIME";
+    public static final String KEY_FETCH_QUEUE_SIZE = "FETCH_QUEUE_SIZE";
+    public static final String KEY_MAX_IN_FLIGHT = "MAX_IN_FLIGHT";
+    public static final String KEY_HOST_MAX_CONCURRENCY = "HOST_MAX_CONCURRENCY";
+    public static final String KEY_HOST_DELAY = "HOST_DELAY";
+    public static final String KEY_HOST_INTERLEAVE_WINDOW = "HOST_INTERLEAVE_WINDOW";
+    public static final String KEY_CONTINUOUS_FRONTIER_SIZE = "CONTINUOUS_FRONTIER_SIZE";
+    public static final String KEY_ROCKS_WRITE_BATCH_SIZE = "ROCKS_WRITE_BATCH_SIZE";
+    public static final String KEY_ROCKS_WRITE_FLUSH_INTERVAL = "ROCKS_WRITE_FLUSH_INTERVAL";
+    public static final String KEY_ROCKS_SEGMENT_DISABLE_WAL = "ROCKS_SEGMENT_DISABLE_WAL";
+    public static final String KEY_ROCKS_OPTIONS_PROFILE = "ROCKS_OPTIONS_PROFILE";
+    public static final String KEY_ROCKS_BLOCK_CACHE_SIZE = "ROCKS_BLOCK_CACHE_SIZE";
+    public static final String KEY_ROCKS_BLOOM_BITS_PER_KEY = "ROCKS_BLOOM_BITS_PER_KEY";
+    public static final String KEY_ROCKS_WRITE_BUFFER_SIZE = "ROCKS_WRITE_BUFFER_SIZE";
+    public static final String KEY_ROCKS_COMPRESSION = "ROCKS_COMPRESSION";
+    public static final String KEY_ROCKS_GENERATE_THREADS = "ROCKS_GENERATE_THREADS";
 
 
     public static final String KEY_MAX_REDIRECT= "MAX_REDIRECT";
@@ -149,6 +164,111 @@ public class Configuration{
         return set(KEY_WAIT_THREAD_END_TIME, waitThreadEndTime);
     }
 
+    public Integer getFetchQueueSize(){
+        return get(KEY_FETCH_QUEUE_SIZE);
+    }
+    public Configuration setFetchQueueSize(Integer fetchQueueSize){
+        return set(KEY_FETCH_QUEUE_SIZE, fetchQueueSize);
+    }
+
+    public Integer getMaxInFlight(){
+        return get(KEY_MAX_IN_FLIGHT);
+    }
+    public Configuration setMaxInFlight(Integer maxInFlight){
+        return set(KEY_MAX_IN_FLIGHT, maxInFlight);
+    }
+
+    public Integer getHostMaxConcurrency(){
+        return get(KEY_HOST_MAX_CONCURRENCY);
+    }
+    public Configuration setHostMaxConcurrency(Integer hostMaxConcurrency){
+        return set(KEY_HOST_MAX_CONCURRENCY, hostMaxConcurrency);
+    }
+
+    public Integer getHostDelay(){
+        return get(KEY_HOST_DELAY);
+    }
+    public Configuration setHostDelay(Integer hostDelay){
+        return set(KEY_HOST_DELAY, hostDelay);
+    }
+
+    public Integer getHostInterleaveWindow(){
+        return get(KEY_HOST_INTERLEAVE_WINDOW);
+    }
+    public Configuration setHostInterleaveWindow(Integer hostInterleaveWindow){
+        return set(KEY_HOST_INTERLEAVE_WINDOW, hostInterleaveWindow);
+    }
+
+    public Integer getContinuousFrontierSize(){
+        return get(KEY_CONTINUOUS_FRONTIER_SIZE);
+    }
+    public Configuration setContinuousFrontierSize(Integer continuousFrontierSize){
+        return set(KEY_CONTINUOUS_FRONTIER_SIZE, continuousFrontierSize);
+    }
+
+    public Integer getRocksWriteBatchSize(){
+        return get(KEY_ROCKS_WRITE_BATCH_SIZE);
+    }
+    public Configuration setRocksWriteBatchSize(Integer rocksWriteBatchSize){
+        return set(KEY_ROCKS_WRITE_BATCH_SIZE, rocksWriteBatchSize);
+    }
+
+    public Integer getRocksWriteFlushInterval(){
+        return get(KEY_ROCKS_WRITE_FLUSH_INTERVAL);
+    }
+    public Configuration setRocksWriteFlushInterval(Integer rocksWriteFlushInterval){
+        return set(KEY_ROCKS_WRITE_FLUSH_INTERVAL, rocksWriteFlushInterval);
+    }
+
+    public Boolean getRocksSegmentDisableWAL(){
+        return get(KEY_ROCKS_SEGMENT_DISABLE_WAL);
+    }
+    public Configuration setRocksSegmentDisableWAL(Boolean rocksSegmentDisableWAL){
+        return set(KEY_ROCKS_SEGMENT_DISABLE_WAL, rocksSegmentDisableWAL);
+    }
+
+    public String getRocksOptionsProfile(){
+        return get(KEY_ROCKS_OPTIONS_PROFILE);
+    }
+    public Configuration setRocksOptionsProfile(String rocksOptionsProfile){
+        return set(KEY_ROCKS_OPTIONS_PROFILE, rocksOptionsProfile);
+    }
+
+    public Integer getRocksBlockCacheSize(){
+        return get(KEY_ROCKS_BLOCK_CACHE_SIZE);
+    }
+    public Configuration setRocksBlockCacheSize(Integer rocksBlockCacheSize){
+        return set(KEY_ROCKS_BLOCK_CACHE_SIZE, rocksBlockCacheSize);
+    }
+
+    public Integer getRocksBloomBitsPerKey(){
+        return get(KEY_ROCKS_BLOOM_BITS_PER_KEY);
+    }
+    public Configuration setRocksBloomBitsPerKey(Integer rocksBloomBitsPerKey){
+        return set(KEY_ROCKS_BLOOM_BITS_PER_KEY, rocksBloomBitsPerKey);
+    }
+
+    public Integer getRocksWriteBufferSize(){
+        return get(KEY_ROCKS_WRITE_BUFFER_SIZE);
+    }
+    public Configuration setRocksWriteBufferSize(Integer rocksWriteBufferSize){
+        return set(KEY_ROCKS_WRITE_BUFFER_SIZE, rocksWriteBufferSize);
+    }
+
+    public String getRocksCompression(){
+        return get(KEY_ROCKS_COMPRESSION);
+    }
+    public Configuration setRocksCompression(String rocksCompression){
+        return set(KEY_ROCKS_COMPRESSION, rocksCompression);
+    }
+
+    public Integer getRocksGenerateThreads(){
+        return get(KEY_ROCKS_GENERATE_THREADS);
+    }
+    public Configuration setRocksGenerateThreads(Integer rocksGenerateThreads){
+        return set(KEY_ROCKS_GENERATE_THREADS, rocksGenerateThreads);
+    }
+
     public Integer getMaxRedirect(){
         return get(KEY_MAX_REDIRECT);
     }
@@ -203,6 +323,21 @@ public class Configuration{
                     defaultConf.set(KEY_EXECUTE_INTERVAL, Config.EXECUTE_INTERVAL);
                     defaultConf.set(KEY_THREAD_KILLER, Config.THREAD_KILLER);
                     defaultConf.set(KEY_WAIT_THREAD_END_TIME, Config.WAIT_THREAD_END_TIME);
+                    defaultConf.set(KEY_FETCH_QUEUE_SIZE, Config.FETCH_QUEUE_SIZE);
+                    defaultConf.set(KEY_MAX_IN_FLIGHT, Config.MAX_IN_FLIGHT);
+                    defaultConf.set(KEY_HOST_MAX_CONCURRENCY, Config.HOST_MAX_CONCURRENCY);
+                    defaultConf.set(KEY_HOST_DELAY, Config.HOST_DELAY);
+                    defaultConf.set(KEY_HOST_INTERLEAVE_WINDOW, Config.HOST_INTERLEAVE_WINDOW);
+                    defaultConf.set(KEY_CONTINUOUS_FRONTIER_SIZE, Config.CONTINUOUS_FRONTIER_SIZE);
+                    defaultConf.set(KEY_ROCKS_WRITE_BATCH_SIZE, Config.ROCKS_WRITE_BATCH_SIZE);
+                    defaultConf.set(KEY_ROCKS_WRITE_FLUSH_INTERVAL, Config.ROCKS_WRITE_FLUSH_INTERVAL);
+                    defaultConf.set(KEY_ROCKS_SEGMENT_DISABLE_WAL, Config.ROCKS_SEGMENT_DISABLE_WAL);
+                    defaultConf.set(KEY_ROCKS_OPTIONS_PROFILE, Config.ROCKS_OPTIONS_PROFILE);
+                    defaultConf.set(KEY_ROCKS_BLOCK_CACHE_SIZE, Config.ROCKS_BLOCK_CACHE_SIZE);
+                    defaultConf.set(KEY_ROCKS_BLOOM_BITS_PER_KEY, Config.ROCKS_BLOOM_BITS_PER_KEY);
+                    defaultConf.set(KEY_ROCKS_WRITE_BUFFER_SIZE, Config.ROCKS_WRITE_BUFFER_SIZE);
+                    defaultConf.set(KEY_ROCKS_COMPRESSION, Config.ROCKS_COMPRESSION);
+                    defaultConf.set(KEY_ROCKS_GENERATE_THREADS, Config.ROCKS_GENERATE_THREADS);
                     defaultConf.set(KEY_MAX_REDIRECT, Config.MAX_REDIRECT);
                     defaultConf.set(KEY_MAX_RECEIVE_SIZE, Config.MAX_RECEIVE_SIZE);
                     defaultConf.set(KEY_DEFAULT_USER_AGENT, Config.DEFAULT_USER_AGENT);
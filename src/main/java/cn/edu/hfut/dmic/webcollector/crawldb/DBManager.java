@@ -18,6 +18,7 @@
 package cn.edu.hfut.dmic.webcollector.crawldb;
 
 
+import cn.edu.hfut.dmic.webcollector.conf.Configuration;
 import cn.edu.hfut.dmic.webcollector.conf.DefaultConfigured;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
@@ -42,6 +43,29 @@ public abstract class DBManager extends DefaultConfigured implements Injector, S
         return generator;
     }
 
+    /**
+     * 创建生成器，scorer不为null时包装为按分数生成的PriorityGenerator，
+     * 设置了Configuration.KEY_HOST_INTERLEAVE_WINDOW时再包装为按host轮流生成的HostInterleavedGenerator
+     *
+     * @param generatorFilter 过滤器
+     * @param scorer 计算任务优先级分数，可以为null
+     * @return 生成器
+     * @throws Exception 异常
+     */
+    public Generator createGenerator(GeneratorFilter generatorFilter, Scorer scorer) throws Exception {
+        Generator generator = createGenerator(generatorFilter);
+        if (scorer != null) {
+            generator = new PriorityGenerator(generator, scorer);
+            ConfigurationUtils.setTo(this, generator, scorer);
+        }
+        int hostInterleaveWindow = getConf().getOrDefault(Configuration.KEY_HOST_INTERLEAVE_WINDOW, 0);
+        if (hostInterleaveWindow > 0) {
+            generator = new HostInterleavedGenerator(generator, hostInterleaveWindow);
+            ConfigurationUtils.setTo(this, generator);
+        }
+        return generator;
+    }
+
     public abstract void open() throws Exception;
 
     public abstract void close() throws Exception;
@@ -52,6 +76,15 @@ public abstract class DBManager extends DefaultConfigured implements Injector, S
 
     public abstract void merge() throws Exception;
 
+    /**
+     * crawldb中不存在该任务时写入crawldb，用于持续爬取模式下新链接的在线去重
+     *
+     * @param datum 任务
+     * @return 是否写入，已存在时返回false
+     * @throws Exception 异常
+     */
+    public abstract boolean injectIfAbsent(CrawlDatum datum) throws Exception;
+
     public void inject(CrawlDatum datum) throws Exception {
         inject(datum, false);
     }
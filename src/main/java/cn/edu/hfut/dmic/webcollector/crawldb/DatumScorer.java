@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.crawldb;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+
+/**
+ * 直接使用任务自身的分数(CrawlDatum.score())，
+ * 可以在发现链接时根据锚文本、来源页面等信息为链接设置分数
+ *
+ * @author hu
+ */
+public class DatumScorer implements Scorer {
+
+    @Override
+    public double score(CrawlDatum datum) {
+        return datum.score();
+    }
+}
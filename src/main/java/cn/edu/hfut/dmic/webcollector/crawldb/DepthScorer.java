@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.crawldb;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+
+/**
+ * 按深度计算分数，深度越小分数越高，分数为1/(1+depth)
+ * 深度从meta中读取，没有深度信息的任务(例如种子)深度为0
+ *
+ * @author hu
+ */
+public class DepthScorer implements Scorer {
+
+    public static final String DEFAULT_DEPTH_KEY = "depth";
+
+    protected String depthKey;
+
+    public DepthScorer() {
+        this(DEFAULT_DEPTH_KEY);
+    }
+
+    /**
+     * @param depthKey 保存深度的meta key，持续爬取模式下可以使用Fetcher.META_KEY_HOP
+     */
+    public DepthScorer(String depthKey) {
+        this.depthKey = depthKey;
+    }
+
+    @Override
+    public double score(CrawlDatum datum) {
+        String depth = datum.meta(depthKey);
+        if (depth == null) {
+            return 1;
+        }
+        return 1.0 / (1 + Math.max(0, Double.parseDouble(depth)));
+    }
+}
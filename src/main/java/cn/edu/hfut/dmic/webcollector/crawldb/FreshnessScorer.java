@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.crawldb;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+
+/**
+ * 按距上次执行的时间计算分数，用于重复爬取时优先更新最久没有执行的任务
+ * 分数为age/(age+halfLife)，从未执行过的任务分数为1
+ *
+ * @author hu
+ */
+public class FreshnessScorer implements Scorer {
+
+    protected long halfLife;
+
+    /**
+     * @param halfLife 分数为0.5时距上次执行的时间(毫秒)
+     */
+    public FreshnessScorer(long halfLife) {
+        this.halfLife = halfLife;
+    }
+
+    @Override
+    public double score(CrawlDatum datum) {
+        if (datum.getStatus() == CrawlDatum.STATUS_DB_UNEXECUTED) {
+            return 1;
+        }
+        long age = Math.max(0, System.currentTimeMillis() - datum.getExecuteTime());
+        return (double) age / (age + halfLife);
+    }
+}
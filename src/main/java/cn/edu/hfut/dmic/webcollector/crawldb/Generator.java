@@ -24,6 +24,8 @@ import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * 抓取任务生成器
  *
@@ -34,11 +36,11 @@ public abstract class Generator extends DefaultConfigured{
     public static final Logger LOG = LoggerFactory.getLogger(Generator.class);
 
     protected GeneratorFilter filter = null;
-    protected int totalGenerate;
+    // 可能被多个线程同时更新，见next()
+    protected final AtomicInteger totalGenerate = new AtomicInteger(0);
 
 
     public Generator() {
-        this.totalGenerate = 0;
     }
 
 
@@ -48,12 +50,40 @@ public abstract class Generator extends DefaultConfigured{
      */
     public CrawlDatum next(){
         int topN = getConf().getTopN();
-        int maxExecuteCount = getConf().getOrDefault(Configuration.KEY_MAX_EXECUTE_COUNT, Integer.MAX_VALUE);
 
-        if(topN > 0 && totalGenerate >= topN){
-            return null;
+        if (topN > 0) {
+            // 先占用名额再生成，nextFiltered()线程安全时多个线程同时调用也不会超过topN
+            while (true) {
+                int current = totalGenerate.get();
+                if (current >= topN) {
+                    return null;
+                }
+                if (totalGenerate.compareAndSet(current, current + 1)) {
+                    break;
+                }
+            }
+            CrawlDatum datum = nextFiltered();
+            if (datum == null) {
+                totalGenerate.decrementAndGet();
+            }
+            return datum;
         }
 
+        CrawlDatum datum = nextFiltered();
+        if (datum != null) {
+            totalGenerate.incrementAndGet();
+        }
+        return datum;
+    }
+
+    /**
+     * 返回下一个通过过滤器且执行次数没有超过上限的任务，不受TOP_N限制，也不计入totalGenerate
+     *
+     * @return 任务，没有更多任务时返回null
+     */
+    protected CrawlDatum nextFiltered(){
+        int maxExecuteCount = getMaxExecuteCount();
+
         CrawlDatum datum;
         while (true) {
             try {
@@ -61,11 +91,7 @@ public abstract class Generator extends DefaultConfigured{
                 if (datum == null) {
                     return datum;
                 }
-                if(filter == null || (datum = filter.filter(datum))!=null){
-                    if (datum.getExecuteCount() > maxExecuteCount) {
-                        continue;
-                    }
-                    totalGenerate += 1;
+                if ((datum = accept(datum, maxExecuteCount)) != null) {
                     return datum;
                 }
 
@@ -77,6 +103,27 @@ public abstract class Generator extends DefaultConfigured{
         }
     }
 
+    protected int getMaxExecuteCount() {
+        return getConf().getOrDefault(Configuration.KEY_MAX_EXECUTE_COUNT, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 对任务应用过滤器和最大执行次数的限制
+     *
+     * @param datum 任务
+     * @param maxExecuteCount 最大执行次数
+     * @return 通过时返回任务(可能被过滤器替换)，否则返回null
+     */
+    protected CrawlDatum accept(CrawlDatum datum, int maxExecuteCount) {
+        if (filter != null && (datum = filter.filter(datum)) == null) {
+            return null;
+        }
+        if (datum.getExecuteCount() > maxExecuteCount) {
+            return null;
+        }
+        return datum;
+    }
+
     public abstract CrawlDatum nextWithoutFilter() throws Exception;
 
 
@@ -98,7 +145,7 @@ public abstract class Generator extends DefaultConfigured{
 //    }
 
     public int getTotalGenerate(){
-        return totalGenerate;
+        return totalGenerate.get();
     }
 
     public abstract void close() throws Exception;
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.crawldb;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import cn.edu.hfut.dmic.webcollector.util.UrlUtils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * 按host轮流生成任务，包装另一个Generator
+ * crawldb中的任务按URL排序，同一host的任务会连续生成，抓取队列容易被单个host占满，
+ * 这里最多缓存window个任务并按host分组，每次从下一个host取出一个任务，
+ * 只能在缓存的任务之间交错，window越大交错越均匀
+ *
+ * @author hu
+ */
+public class HostInterleavedGenerator extends Generator {
+
+    protected Generator generator;
+    protected int window;
+
+    private final HashMap<String, ArrayDeque<CrawlDatum>> hostQueues = new HashMap<String, ArrayDeque<CrawlDatum>>();
+    // 有缓存任务的host，按轮流的顺序排列
+    private final ArrayDeque<String> hosts = new ArrayDeque<String>();
+    private int buffered = 0;
+    private boolean exhausted = false;
+
+    /**
+     * @param generator 被包装的Generator
+     * @param window 最多缓存的任务数
+     */
+    public HostInterleavedGenerator(Generator generator, int window) {
+        this.generator = generator;
+        this.window = window;
+    }
+
+    @Override
+    protected CrawlDatum nextFiltered() {
+        fill();
+        String host = hosts.poll();
+        if (host == null) {
+            return null;
+        }
+        ArrayDeque<CrawlDatum> hostQueue = hostQueues.get(host);
+        CrawlDatum datum = hostQueue.poll();
+        buffered--;
+        if (hostQueue.isEmpty()) {
+            hostQueues.remove(host);
+        } else {
+            hosts.offer(host);
+        }
+        return datum;
+    }
+
+    private void fill() {
+        while (!exhausted && buffered < window) {
+            CrawlDatum datum = generator.nextFiltered();
+            if (datum == null) {
+                exhausted = true;
+                return;
+            }
+            String host = UrlUtils.hostOf(datum.url());
+            ArrayDeque<CrawlDatum> hostQueue = hostQueues.get(host);
+            if (hostQueue == null) {
+                hostQueue = new ArrayDeque<CrawlDatum>();
+                hostQueues.put(host, hostQueue);
+                hosts.offer(host);
+            }
+            hostQueue.offer(datum);
+            buffered++;
+        }
+    }
+
+    @Override
+    public CrawlDatum nextWithoutFilter() throws Exception {
+        return generator.nextWithoutFilter();
+    }
+
+    @Override
+    public void close() throws Exception {
+        generator.close();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.crawldb;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.PriorityQueue;
+
+/**
+ * 按优先级分数生成任务，包装另一个Generator
+ * 设置了TOP_N时遍历被包装的Generator，用大小为TOP_N的最小堆保留分数最高的任务，
+ * 再按分数从高到低生成，分数相同时保持原来的顺序；
+ * 没有设置TOP_N时所有任务都会被生成，按原来的顺序生成，不缓存任务
+ *
+ * @author hu
+ */
+public class PriorityGenerator extends Generator {
+
+    protected Generator generator;
+    protected Scorer scorer;
+
+    private ArrayList<CrawlDatum> selected = null;
+    private int index = 0;
+
+    public PriorityGenerator(Generator generator, Scorer scorer) {
+        this.generator = generator;
+        this.scorer = scorer;
+    }
+
+    @Override
+    protected CrawlDatum nextFiltered() {
+        int topN = getConf().getTopN();
+        if (topN <= 0) {
+            return generator.nextFiltered();
+        }
+        if (selected == null) {
+            selected = select(topN);
+        }
+        if (index >= selected.size()) {
+            return null;
+        }
+        CrawlDatum datum = selected.get(index);
+        selected.set(index++, null);
+        return datum;
+    }
+
+    private ArrayList<CrawlDatum> select(int topN) {
+        PriorityQueue<ScoredDatum> heap = new PriorityQueue<ScoredDatum>(Math.min(topN, 1024));
+        long order = 0;
+        CrawlDatum datum;
+        while ((datum = generator.nextFiltered()) != null) {
+            double score = scorer.score(datum);
+            if (Double.isNaN(score)) {
+                score = Double.NEGATIVE_INFINITY;
+            }
+            if (heap.size() < topN) {
+                heap.add(new ScoredDatum(datum, score, order));
+            } else if (score > heap.peek().score) {
+                heap.poll();
+                heap.add(new ScoredDatum(datum, score, order));
+            }
+            order++;
+        }
+        ArrayList<CrawlDatum> result = new ArrayList<CrawlDatum>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll().datum);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public CrawlDatum nextWithoutFilter() throws Exception {
+        return generator.nextWithoutFilter();
+    }
+
+    @Override
+    public void close() throws Exception {
+        generator.close();
+    }
+
+    /**
+     * 堆顶为分数最低的任务，分数相同时顺序靠后的任务先被淘汰
+     */
+    private static class ScoredDatum implements Comparable<ScoredDatum> {
+
+        CrawlDatum datum;
+        double score;
+        long order;
+
+        ScoredDatum(CrawlDatum datum, double score, long order) {
+            this.datum = datum;
+            this.score = score;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(ScoredDatum other) {
+            int cmp = Double.compare(score, other.score);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return Long.compare(other.order, order);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.crawldb;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+
+/**
+ * 计算任务的优先级分数，设置了TOP_N时PriorityGenerator优先生成分数高的任务
+ * 实现DefaultConfigured等Configured接口时可以获取爬虫的配置
+ *
+ * @author hu
+ */
+public interface Scorer {
+
+    /**
+     * @param datum 通过GeneratorFilter的任务
+     * @return 优先级分数，越大越优先
+     */
+    double score(CrawlDatum datum);
+}
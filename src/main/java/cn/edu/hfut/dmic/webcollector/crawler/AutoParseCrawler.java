@@ -17,13 +17,15 @@
  */
 package cn.edu.hfut.dmic.webcollector.crawler;
 
-import cn.edu.hfut.dmic.webcollector.fetcher.Executor;
+import cn.edu.hfut.dmic.webcollector.fetcher.AsyncExecutor;
+import cn.edu.hfut.dmic.webcollector.fetcher.Cancelable;
 import cn.edu.hfut.dmic.webcollector.fetcher.Visitor;
 import cn.edu.hfut.dmic.webcollector.fetcher.VisitorMethodDispatcher;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
 import cn.edu.hfut.dmic.webcollector.model.Links;
 import cn.edu.hfut.dmic.webcollector.model.Page;
+import cn.edu.hfut.dmic.webcollector.net.AsyncRequester;
 import cn.edu.hfut.dmic.webcollector.net.Requester;
 import cn.edu.hfut.dmic.webcollector.plugin.net.OkHttpRequester;
 import cn.edu.hfut.dmic.webcollector.util.ConfigurationUtils;
@@ -32,11 +34,15 @@ import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
 /**
  *
  * @author hu
  */
-public abstract class AutoParseCrawler extends Crawler implements Executor, Visitor{
+public abstract class AutoParseCrawler extends Crawler implements AsyncExecutor, Cancelable, Visitor{
 
     public static final Logger LOG = LoggerFactory.getLogger(AutoParseCrawler.class);
 
@@ -48,6 +54,8 @@ public abstract class AutoParseCrawler extends Crawler implements Executor, Visi
     protected Requester requester;
 
     protected VisitorMethodDispatcher visitorMethodDispatcher;
+    // 子类重写了execute时，异步模式也通过execute执行
+    private boolean executeOverridden = false;
 
     public AutoParseCrawler(boolean autoParse) {
         this.autoParse = autoParse;
@@ -60,6 +68,7 @@ public abstract class AutoParseCrawler extends Crawler implements Executor, Visi
     public void start(int depth) throws Exception {
         this.visitorMethodDispatcher = new VisitorMethodDispatcher(visitor, autoParse, regexRule);
         ConfigurationUtils.setTo(this, this.visitorMethodDispatcher);
+        this.executeOverridden = isExecuteOverridden();
         super.start(depth);
     }
 
@@ -90,7 +99,59 @@ public abstract class AutoParseCrawler extends Crawler implements Executor, Visi
 
     }
 
+    /**
+     * @return 子类是否重写了execute
+     */
+    protected boolean isExecuteOverridden() {
+        try {
+            return getClass().getMethod("execute", CrawlDatum.class, CrawlDatums.class)
+                    .getDeclaringClass() != AutoParseCrawler.class;
+        } catch (NoSuchMethodException ex) {
+            return true;
+        }
+    }
 
+    /**
+     * requester实现AsyncRequester且子类没有重写execute时异步发送请求，请求完成后在workerExecutor中解析；
+     * 否则在workerExecutor中调用execute同步执行
+     */
+    @Override
+    public CompletableFuture<Void> executeAsync(final CrawlDatum datum, final CrawlDatums next, java.util.concurrent.Executor workerExecutor) {
+        if (executeOverridden || !(requester instanceof AsyncRequester)) {
+            return CompletableFuture.runAsync(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        execute(datum, next);
+                    } catch (Exception ex) {
+                        throw new CompletionException(ex);
+                    }
+                }
+            }, workerExecutor);
+        }
+        return ((AsyncRequester) requester).getResponseAsync(datum).thenAcceptAsync(new Consumer<Page>() {
+            @Override
+            public void accept(Page page) {
+                try {
+                    visitorMethodDispatcher.dispatch(page, next);
+                } catch (Exception ex) {
+                    throw new CompletionException(ex);
+                }
+            }
+        }, workerExecutor);
+    }
+
+
+
+    /**
+     * requester实现Cancelable时取消其进行中的请求
+     */
+    @Override
+    public void cancelAll() {
+        if (requester instanceof Cancelable) {
+            ((Cancelable) requester).cancelAll();
+        }
+    }
 
     /**
      * 添加URL正则约束
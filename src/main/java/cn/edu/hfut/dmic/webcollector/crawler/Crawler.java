@@ -19,7 +19,9 @@ package cn.edu.hfut.dmic.webcollector.crawler;
 
 import cn.edu.hfut.dmic.webcollector.conf.DefaultConfigured;
 import cn.edu.hfut.dmic.webcollector.crawldb.GeneratorFilter;
+import cn.edu.hfut.dmic.webcollector.crawldb.Scorer;
 import cn.edu.hfut.dmic.webcollector.crawldb.StatusGeneratorFilter;
+import cn.edu.hfut.dmic.webcollector.fetcher.FetchQueue;
 import cn.edu.hfut.dmic.webcollector.fetcher.NextFilter;
 import cn.edu.hfut.dmic.webcollector.fetcher.Executor;
 import cn.edu.hfut.dmic.webcollector.fetcher.Fetcher;
@@ -58,6 +60,8 @@ public class Crawler extends DefaultConfigured {
     public final static int STOPED = 2;
     protected boolean resumable = false;
     protected int threads = 50;
+    protected int fetchMode = Fetcher.MODE_THREAD;
+    protected boolean continuous = false;
 
 
     protected CrawlDatums seeds = new CrawlDatums();
@@ -67,8 +71,10 @@ public class Crawler extends DefaultConfigured {
 
     protected Executor executor = null;
     protected NextFilter nextFilter = null;
+    protected FetchQueue fetchQueue = null;
     protected DBManager dbManager;
     protected GeneratorFilter generatorFilter = new StatusGeneratorFilter();
+    protected Scorer scorer = null;
     protected void inject() throws Exception {
         dbManager.inject(seeds);
     }
@@ -84,6 +90,8 @@ public class Crawler extends DefaultConfigured {
 
     /**
      * 开始爬取，迭代次数为depth
+     * 持续爬取模式下depth为最大深度(种子为第1层)，一轮抓取完所有可达的任务，
+     * 只有新链接超出frontier容量时才需要再次生成
      *
      * @param depth 迭代次数
      * @throws Exception 异常
@@ -119,11 +127,12 @@ public class Crawler extends DefaultConfigured {
         }
 
         status = RUNNING;
-        for (int i = 0; i < depth; i++) {
+        String round = continuous ? "round " : "depth ";
+        for (int i = 0; i < depth || continuous; i++) {
             if (status == STOPED) {
                 break;
             }
-            LOG.info("start depth " + (i + 1));
+            LOG.info("start " + round + (i + 1));
             long startTime = System.currentTimeMillis();
             fetcher = new Fetcher();
             //register fetcher conf
@@ -132,14 +141,19 @@ public class Crawler extends DefaultConfigured {
             fetcher.setDBManager(dbManager);
             fetcher.setExecutor(executor);
             fetcher.setNextFilter(nextFilter);
+            fetcher.setScorer(scorer);
+            fetcher.setFetchQueue(fetchQueue);
             fetcher.setThreads(threads);
+            fetcher.setFetchMode(fetchMode);
+            fetcher.setContinuous(continuous);
+            fetcher.setMaxDepth(depth);
             int totalGenerate = fetcher.fetchAll(generatorFilter);
 
             long endTime = System.currentTimeMillis();
             long costTime = (endTime - startTime) / 1000;
 
-            LOG.info("depth " + (i + 1) + " finish: \n\ttotal urls:\t" + totalGenerate + "\n\ttotal time:\t" + costTime + " seconds");
-            if (totalGenerate == 0) {
+            LOG.info(round + (i + 1) + " finish: \n\ttotal urls:\t" + totalGenerate + "\n\ttotal time:\t" + costTime + " seconds");
+            if (totalGenerate == 0 || (continuous && !fetcher.isOverflowed())) {
                 break;
             }
 
@@ -338,6 +352,20 @@ public class Crawler extends DefaultConfigured {
         this.generatorFilter = generatorFilter;
     }
 
+    public Scorer getScorer() {
+        return scorer;
+    }
+
+    /**
+     * 设置任务优先级分数的计算方法，例如DepthScorer、FreshnessScorer、DatumScorer，
+     * 设置了TOP_N时每轮只生成分数最高的TOP_N个任务，否则不影响生成的任务
+     *
+     * @param scorer 计算任务优先级分数，为null时按crawldb中的顺序生成
+     */
+    public void setScorer(Scorer scorer) {
+        this.scorer = scorer;
+    }
+
     /**
      * 返回是否断点爬取
      *
@@ -374,6 +402,36 @@ public class Crawler extends DefaultConfigured {
         this.threads = threads;
     }
 
+    public int getFetchMode() {
+        return fetchMode;
+    }
+
+    /**
+     * 设置抓取模式，Fetcher.MODE_THREAD(默认)、Fetcher.MODE_ASYNC或Fetcher.MODE_VIRTUAL_THREAD
+     * 异步模式下线程数为解析线程数，同时进行的请求数由Configuration.KEY_MAX_IN_FLIGHT限制；
+     * 使用OkHttpRequester时每个进行中的请求仍占用一个Dispatcher线程，线程数上限为KEY_MAX_IN_FLIGHT；
+     * 虚拟线程模式下线程数为同时执行的任务数上限
+     *
+     * @param fetchMode 抓取模式
+     */
+    public void setFetchMode(int fetchMode) {
+        this.fetchMode = fetchMode;
+    }
+
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    /**
+     * 设置是否使用持续爬取模式，见Fetcher.setContinuous
+     * 新发现的链接通过DBManager.injectIfAbsent在线去重后立即抓取，各层之间没有等待和合并
+     *
+     * @param continuous 是否使用持续爬取模式
+     */
+    public void setContinuous(boolean continuous) {
+        this.continuous = continuous;
+    }
+
     public int getMaxExecuteCount() {
         return maxExecuteCount;
     }
@@ -458,6 +516,19 @@ public class Crawler extends DefaultConfigured {
         this.nextFilter = nextFilter;
     }
 
+    public FetchQueue getFetchQueue() {
+        return fetchQueue;
+    }
+
+    /**
+     * 设置抓取队列，为null时使用默认的LockFreeFetchQueue
+     *
+     * @param fetchQueue 抓取队列
+     */
+    public void setFetchQueue(FetchQueue fetchQueue) {
+        this.fetchQueue = fetchQueue;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2015 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.fetcher;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 支持异步执行的执行器，用于Fetcher.MODE_ASYNC
+ *
+ * @author hu
+ */
+public interface AsyncExecutor extends Executor {
+
+    /**
+     * 异步执行任务，返回的CompletableFuture结束时任务执行完成，以异常结束表示执行失败
+     *
+     * @param datum 爬取任务
+     * @param next 后续任务
+     * @param workerExecutor 用于执行解析等CPU操作的线程池，由Fetcher提供
+     * @return 任务执行结果
+     */
+    CompletableFuture<Void> executeAsync(CrawlDatum datum, CrawlDatums next, java.util.concurrent.Executor workerExecutor);
+}
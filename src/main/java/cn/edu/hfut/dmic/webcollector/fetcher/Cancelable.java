@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.fetcher;
+
+/**
+ * 可以取消进行中请求的执行器或Requester
+ * 阻塞在网络IO上的线程不响应中断，Fetcher停止时等待超时后调用cancelAll，使这些请求以异常结束
+ *
+ * @author hu
+ */
+public interface Cancelable {
+
+    /**
+     * 取消所有进行中的请求
+     */
+    void cancelAll();
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.fetcher;
+
+/**
+ * 抓取队列，QueueFeeder向其中写入任务，FetcherThread从中取出任务
+ * 默认实现为LockFreeFetchQueue，需要按host控制抓取频率时使用HostFetchQueue
+ *
+ * @author hu
+ */
+public interface FetchQueue {
+
+    /**
+     * 写入一个任务，队列已满时阻塞
+     *
+     * @param item 抓取任务
+     * @throws InterruptedException 等待时被中断
+     */
+    void put(Fetcher.FetchItem item) throws InterruptedException;
+
+    /**
+     * 取出一个任务，队列为空时阻塞
+     * 调用finish()之后，队列取空时返回null
+     *
+     * @return 抓取任务，没有更多任务时返回null
+     * @throws InterruptedException 等待时被中断
+     */
+    Fetcher.FetchItem take() throws InterruptedException;
+
+    /**
+     * 取出一个任务，队列为空时立即返回null
+     *
+     * @return 抓取任务或null
+     */
+    Fetcher.FetchItem poll();
+
+    /**
+     * 任务执行结束(无论成功失败)时由Fetcher调用，
+     * 按host调度的队列用它释放host的并发数
+     *
+     * @param item 执行结束的任务
+     */
+    void done(Fetcher.FetchItem item);
+
+    /**
+     * @return 当前队列中的任务数量（并发情况下为近似值）
+     */
+    int getSize();
+
+    /**
+     * @return 累计写入队列的任务数量
+     */
+    int getTotalSize();
+
+    /**
+     * 标记不会再有新任务写入（由QueueFeeder在生成结束时调用），
+     * 唤醒所有阻塞在take上的线程
+     */
+    void finish();
+
+    boolean isFinished();
+
+    /**
+     * 清空队列并重置finish标记，不能与put/take并发调用
+     */
+    void clear();
+
+    void dump();
+
+}
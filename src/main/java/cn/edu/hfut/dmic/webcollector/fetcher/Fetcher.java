@@ -20,16 +20,27 @@ package cn.edu.hfut.dmic.webcollector.fetcher;
 import cn.edu.hfut.dmic.webcollector.crawldb.DBManager;
 import cn.edu.hfut.dmic.webcollector.crawldb.Generator;
 import cn.edu.hfut.dmic.webcollector.crawldb.GeneratorFilter;
+import cn.edu.hfut.dmic.webcollector.crawldb.Scorer;
 import cn.edu.hfut.dmic.webcollector.conf.CommonConfigured;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,13 +58,16 @@ public class Fetcher extends CommonConfigured{
 
     public Executor executor;
     public NextFilter nextFilter = null;
+    public Scorer scorer = null;
 
     private AtomicInteger activeThreads;
     private AtomicInteger startedThreads;
     private AtomicInteger spinWaiting;
+    private CountDownLatch finishedThreads;
+    private AtomicInteger inFlight;
     private AtomicLong lastRequestStart;
     private QueueFeeder feeder = null;
-    private FetchQueue fetchQueue = null;
+    protected FetchQueue fetchQueue = null;
 
     /**
      *
@@ -64,7 +78,49 @@ public class Fetcher extends CommonConfigured{
      *
      */
     public static final int FETCH_FAILED = 2;
+
+    /**
+     * 每个线程同步执行一个任务
+     */
+    public static final int MODE_THREAD = 1;
+
+    /**
+     * 通过AsyncExecutor异步执行任务，少量线程即可同时进行大量请求
+     */
+    public static final int MODE_ASYNC = 2;
+
+    /**
+     * 每个任务一个虚拟线程(JDK 21+)，threads为同时执行的任务数上限
+     */
+    public static final int MODE_VIRTUAL_THREAD = 3;
+
+    /**
+     * 不支持虚拟线程时MODE_VIRTUAL_THREAD使用的平台线程数上限
+     */
+    public static final int MAX_FALLBACK_THREADS = 200;
+
+    /**
+     * 持续爬取模式下记录任务与种子之间链接跳数的meta key
+     */
+    public static final String META_KEY_HOP = "hop";
+
+    /**
+     * 持续爬取模式下记录任务在哪一轮被在线写入crawldb的meta key
+     */
+    public static final String META_KEY_ROUND = "round";
+
     private int threads = 50;
+    private int fetchMode = MODE_THREAD;
+
+    private boolean continuous = false;
+    private int maxDepth = Integer.MAX_VALUE;
+    // 持续爬取模式：已进入抓取队列或正在执行的任务
+    private Set<String> inFlightKeys;
+    // 持续爬取模式：本轮的标识，生成器遍历到本轮在线写入crawldb的任务时跳过
+    private String round;
+    private static final AtomicLong ROUND_COUNTER = new AtomicLong(0);
+    private LinkedBlockingQueue<FetchItem> frontier;
+    private volatile boolean overflowed;
     //private boolean isContentStored = false;
 
     public Executor getExecutor() {
@@ -87,45 +143,6 @@ public class Fetcher extends CommonConfigured{
         }
     }
 
-    public static class FetchQueue {
-
-        public AtomicInteger totalSize = new AtomicInteger(0);
-
-        public final List<FetchItem> queue = Collections.synchronizedList(new LinkedList<FetchItem>());
-
-        public void clear() {
-            queue.clear();
-        }
-
-        public int getSize() {
-            return queue.size();
-        }
-
-        public synchronized void addFetchItem(FetchItem item) {
-            if (item == null) {
-                return;
-            }
-            queue.add(item);
-            totalSize.incrementAndGet();
-        }
-
-        public synchronized FetchItem getFetchItem() {
-            if (queue.isEmpty()) {
-                return null;
-            }
-            return queue.remove(0);
-        }
-
-        public synchronized void dump() {
-            for (int i = 0; i < queue.size(); i++) {
-                FetchItem it = queue.get(i);
-                LOG.info("  " + i + ". " + it.datum.url());
-            }
-
-        }
-
-    }
-
     public static class QueueFeeder extends Thread {
 
         public FetchQueue queue;
@@ -133,21 +150,24 @@ public class Fetcher extends CommonConfigured{
         public DBManager dbManager;
         public Generator generator = null;
         public GeneratorFilter generatorFilter = null;
-        public int size;
+        public Scorer scorer = null;
 
-        public QueueFeeder(FetchQueue queue, DBManager dbManager, GeneratorFilter generatorFilter, int size) {
+        public QueueFeeder(FetchQueue queue, DBManager dbManager, GeneratorFilter generatorFilter) {
             this.queue = queue;
             this.dbManager = dbManager;
             this.generatorFilter = generatorFilter;
-            this.size = size;
         }
 
         public void stopFeeder(){
             running = false;
+            // 唤醒阻塞在put上的feeder
+            this.interrupt();
             while (this.isAlive()) {
                 try {
-                    Thread.sleep(1000);
-                    LOG.info("stopping feeder......");
+                    this.join(1000);
+                    if (this.isAlive()) {
+                        LOG.info("stopping feeder......");
+                    }
                 } catch (InterruptedException ex) {
                 }
             }
@@ -162,46 +182,155 @@ public class Fetcher extends CommonConfigured{
 
         public volatile boolean running = true;
 
+        /**
+         * @return 写入抓取队列的任务数
+         */
+        public int getTotalGenerate() {
+            return generator == null ? 0 : generator.getTotalGenerate();
+        }
+
         @Override
         public void run(){
-
             try {
-                generator = dbManager.createGenerator(generatorFilter);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-            LOG.info("create generator:" + generator.getClass().getName());
-            String generatorFilterClassName = (generatorFilter==null)?"null":generatorFilter.getClass().getName();
-            LOG.info("use generatorFilter:" + generatorFilterClassName);
-
-            boolean hasMore = true;
-            running = true;
-            while (hasMore && running) {
+                try {
+                    generator = dbManager.createGenerator(generatorFilter, scorer);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                LOG.info("create generator:" + generator.getClass().getName());
+                String generatorFilterClassName = (generatorFilter==null)?"null":generatorFilter.getClass().getName();
+                LOG.info("use generatorFilter:" + generatorFilterClassName);
 
-                int feed = size - queue.getSize();
-                if (feed <= 0) {
+                running = true;
+                while (running) {
+                    CrawlDatum datum = generator.next();
+                    if (datum == null) {
+                        break;
+                    }
                     try {
-                        Thread.sleep(1000);
+                        // 队列已满时阻塞，直到有FetcherThread取走任务
+                        queue.put(new FetchItem(datum));
                     } catch (InterruptedException ex) {
+                        break;
                     }
-                    continue;
                 }
-                while (feed > 0 && hasMore && running) {
+            } finally {
+                // 通知FetcherThread不会再有新任务
+                queue.finish();
+            }
+        }
 
-                    CrawlDatum datum = generator.next();
-                    hasMore = (datum != null);
+    }
 
-                    if (hasMore) {
-                        queue.addFetchItem(new FetchItem(datum));
-                        feed--;
-                    }
+    /**
+     * 持续爬取模式下的QueueFeeder
+     * 优先把执行过程中发现的新链接(frontier)写入抓取队列，其次是生成器生成的任务，
+     * 生成器结束后继续等待新链接，直到frontier为空且没有进行中的任务
+     */
+    private class ContinuousQueueFeeder extends QueueFeeder {
+
+        private int totalFeed = 0;
+
+        public ContinuousQueueFeeder(FetchQueue queue, DBManager dbManager, GeneratorFilter generatorFilter) {
+            super(queue, dbManager, generatorFilter);
+        }
+
+        @Override
+        public int getTotalGenerate() {
+            return totalFeed;
+        }
 
+        @Override
+        public void run() {
+            try {
+                try {
+                    generator = dbManager.createGenerator(generatorFilter, scorer);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
                 }
+                LOG.info("create generator:" + generator.getClass().getName());
 
+                boolean generating = true;
+                while (running) {
+                    FetchItem item = frontier.poll();
+                    if (item == null && generating) {
+                        CrawlDatum datum = generator.next();
+                        if (datum == null) {
+                            generating = false;
+                            continue;
+                        }
+                        if (getHop(datum) >= maxDepth || round.equals(datum.meta(META_KEY_ROUND))
+                                || !inFlightKeys.add(datum.key())) {
+                            continue;
+                        }
+                        item = new FetchItem(datum);
+                    }
+                    if (item == null) {
+                        // 先检查frontier再检查inFlightKeys：新链接在发现它的任务结束之前已加入inFlightKeys
+                        if (inFlightKeys.isEmpty()) {
+                            break;
+                        }
+                        try {
+                            item = frontier.poll(100, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException ex) {
+                            break;
+                        }
+                        if (item == null) {
+                            continue;
+                        }
+                    }
+                    try {
+                        queue.put(item);
+                        totalFeed++;
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                }
+            } finally {
+                queue.finish();
             }
-
         }
+    }
 
+    private static int getHop(CrawlDatum datum) {
+        String hop = datum.meta(META_KEY_HOP);
+        return hop == null ? 0 : Integer.parseInt(hop);
+    }
+
+    /**
+     * 持续爬取模式下处理新链接：在线去重后写入crawldb，
+     * 未超过最大深度的链接直接加入frontier，frontier已满时只写入crawldb并标记overflowed，由下一轮生成
+     */
+    private void feedNext(CrawlDatum crawlDatum, CrawlDatums next) throws Exception {
+        int hop = getHop(crawlDatum) + 1;
+        for (int i = 0; i < next.size(); i++) {
+            CrawlDatum datum = next.get(i);
+            String key = datum.key();
+            // 其他线程正在处理同一个链接
+            if (!inFlightKeys.add(key)) {
+                continue;
+            }
+            boolean queued = false;
+            try {
+                datum.meta(META_KEY_HOP, hop);
+                datum.meta(META_KEY_ROUND, round);
+                if (!dbManager.injectIfAbsent(datum)) {
+                    continue;
+                }
+                if (hop >= maxDepth) {
+                    continue;
+                }
+                if (frontier.offer(new FetchItem(datum))) {
+                    queued = true;
+                } else {
+                    overflowed = true;
+                }
+            } finally {
+                if (!queued) {
+                    inFlightKeys.remove(key);
+                }
+            }
+        }
     }
 
     private class FetcherThread extends Thread {
@@ -215,85 +344,300 @@ public class Fetcher extends CommonConfigured{
 
                 while (running) {
                     try {
-                        item = fetchQueue.getFetchItem();
-                        if (item == null) {
-                            if (feeder.isAlive() || fetchQueue.getSize() > 0) {
-                                spinWaiting.incrementAndGet();
-
-                                try {
-                                    Thread.sleep(500);
-                                } catch (Exception ex) {
-                                }
-
-                                spinWaiting.decrementAndGet();
-                                continue;
-                            } else {
-                                return;
-                            }
+                        spinWaiting.incrementAndGet();
+                        try {
+                            item = fetchQueue.take();
+                        } catch (InterruptedException ex) {
+                            return;
+                        } finally {
+                            spinWaiting.decrementAndGet();
+                        }
+                        // 队列已取空且feeder已结束
+                        if (item == null || !running) {
+                            return;
                         }
 
                         lastRequestStart.set(System.currentTimeMillis());
+                        try {
+                            executeItem(item);
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
 
-                        CrawlDatum crawlDatum = item.datum;
-                        //String url = crawlDatum.getUrl();
-                        //Page page = getPage(crawlDatum);
+                    } catch (Exception ex) {
+                        LOG.info("Exception", ex);
+                    }
+                }
 
-                        //crawlDatum.incrRetry(page.getRetry());
-//                        crawlDatum.setFetchTime(System.currentTimeMillis());
-                        CrawlDatums next = new CrawlDatums();
-                        try {
-                            executor.execute(crawlDatum, next);
-                            if (nextFilter != null) {
-                                CrawlDatums filteredNext = new CrawlDatums();
-                                for (int i = 0; i < next.size(); i++) {
-                                    CrawlDatum filterResult = nextFilter.filter(next.get(i), crawlDatum);
-                                    if (filterResult != null) {
-                                        filteredNext.add(filterResult);
-                                    }
+            } catch (Exception ex) {
+                LOG.info("Exception", ex);
+
+            } finally {
+                activeThreads.decrementAndGet();
+                finishedThreads.countDown();
+            }
+
+        }
+
+    }
+
+    /**
+     * 执行一个任务并处理结果，执行后按Configuration.KEY_EXECUTE_INTERVAL休眠
+     *
+     * @param item 抓取任务
+     * @throws InterruptedException 休眠时被中断
+     */
+    protected void executeItem(FetchItem item) throws InterruptedException {
+        CrawlDatum crawlDatum = item.datum;
+        //String url = crawlDatum.getUrl();
+        //Page page = getPage(crawlDatum);
+
+        //crawlDatum.incrRetry(page.getRetry());
+//        crawlDatum.setFetchTime(System.currentTimeMillis());
+        CrawlDatums next = new CrawlDatums();
+        Exception failure = null;
+        try {
+            executor.execute(crawlDatum, next);
+        } catch (Exception ex) {
+            failure = ex;
+        }
+        try {
+            afterExecute(crawlDatum, next, failure);
+        } finally {
+            fetchQueue.done(item);
+        }
+
+        long executeInterval = getConf().getExecuteInterval();
+        if (executeInterval > 0) {
+            Thread.sleep(executeInterval);
+        }
+    }
+
+    /**
+     * 虚拟线程模式(MODE_VIRTUAL_THREAD)下的分发线程
+     * 为每个任务创建一个虚拟线程执行，同时执行的任务数不超过threads，
+     * 被中断时通过shutdownNow中断所有正在执行的任务
+     */
+    private class VirtualFetcherThread extends Thread {
+
+        @Override
+        public void run() {
+            startedThreads.incrementAndGet();
+            activeThreads.incrementAndGet();
+            int concurrency = threads;
+            ExecutorService taskExecutor = createVirtualThreadExecutor();
+            if (taskExecutor == null) {
+                concurrency = Math.min(threads, MAX_FALLBACK_THREADS);
+                LOG.warn("virtual threads are not supported by current JVM (JDK 21+ required), "
+                        + "use a fixed pool of " + concurrency + " platform threads instead of " + threads + " virtual threads");
+                taskExecutor = Executors.newFixedThreadPool(concurrency);
+            }
+            final Semaphore permits = new Semaphore(concurrency);
+            try {
+                while (running) {
+                    FetchItem item;
+                    spinWaiting.incrementAndGet();
+                    try {
+                        item = fetchQueue.take();
+                    } finally {
+                        spinWaiting.decrementAndGet();
+                    }
+                    if (item == null || !running) {
+                        break;
+                    }
+                    permits.acquire();
+                    lastRequestStart.set(System.currentTimeMillis());
+                    inFlight.incrementAndGet();
+
+                    final FetchItem fetchItem = item;
+                    try {
+                        taskExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    executeItem(fetchItem);
+                                } catch (InterruptedException ex) {
+                                } catch (Exception ex) {
+                                    LOG.info("Exception", ex);
+                                } finally {
+                                    inFlight.decrementAndGet();
+                                    permits.release();
                                 }
-                                next = filteredNext;
                             }
+                        });
+                    } catch (RejectedExecutionException ex) {
+                        fetchQueue.done(item);
+                        inFlight.decrementAndGet();
+                        permits.release();
+                        break;
+                    }
+                }
 
-                            LOG.info(String.format("done: %s", crawlDatum.briefInfo()));
+                /*等待正在执行的任务结束*/
+                permits.acquire(concurrency);
+            } catch (InterruptedException ex) {
+                LOG.info("interrupt running tasks");
+                taskExecutor.shutdownNow();
+            } catch (Exception ex) {
+                LOG.info("Exception", ex);
+            } finally {
+                taskExecutor.shutdown();
+                activeThreads.decrementAndGet();
+                finishedThreads.countDown();
+            }
+        }
+    }
 
-                            crawlDatum.setStatus(CrawlDatum.STATUS_DB_SUCCESS);
-                        } catch (Exception ex) {
-                            LOG.info(String.format("failed: %s", crawlDatum.briefInfo()), ex);
-                            crawlDatum.setStatus(CrawlDatum.STATUS_DB_FAILED);
-                        }
+    /**
+     * 创建虚拟线程模式下执行任务的线程池，每个任务一个虚拟线程
+     *
+     * @return 执行任务的线程池，运行环境不支持虚拟线程(JDK 21以下)时返回null，
+     * 此时使用不超过MAX_FALLBACK_THREADS个平台线程的固定线程池
+     */
+    protected ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
 
-                        crawlDatum.incrExecuteCount(1);
-                        crawlDatum.setExecuteTime(System.currentTimeMillis());
-                        try {
-                            dbManager.writeFetchSegment(crawlDatum);
-                            if (crawlDatum.getStatus() == CrawlDatum.STATUS_DB_SUCCESS && !next.isEmpty()) {
-                                dbManager.writeParseSegment(next);
-                            }
-                        } catch (Exception ex) {
-                            LOG.info("Exception when updating db", ex);
-                        }
-                        long executeInterval = getConf().getExecuteInterval();
-                        if (executeInterval > 0) {
-                            try {
-                                Thread.sleep(executeInterval);
-                            } catch (Exception sleepEx) {
-                            }
-                        }
+    /**
+     * 异步模式(MODE_ASYNC)下的分发线程
+     * 从队列中取出任务后交给AsyncExecutor异步执行，不等待执行结束，
+     * 同时进行中的任务数由Configuration.KEY_MAX_IN_FLIGHT限制，
+     * 解析和写入segment在threads个工作线程中进行
+     */
+    private class AsyncFetcherThread extends Thread {
 
+        @Override
+        public void run() {
+            startedThreads.incrementAndGet();
+            activeThreads.incrementAndGet();
+            AsyncExecutor asyncExecutor = (AsyncExecutor) executor;
+            final int maxInFlight = getConf().getMaxInFlight();
+            final Semaphore inFlightPermits = new Semaphore(maxInFlight);
+            final ExecutorService workerPool = Executors.newFixedThreadPool(threads);
+            // workerPool关闭后(分发线程被中断)仍未完成的任务在完成它的线程中处理，保证afterExecute和done被调用
+            final java.util.concurrent.Executor callbackExecutor = new java.util.concurrent.Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    try {
+                        workerPool.execute(command);
+                    } catch (RejectedExecutionException ex) {
+                        command.run();
+                    }
+                }
+            };
+            try {
+                while (running) {
+                    FetchItem item;
+                    spinWaiting.incrementAndGet();
+                    try {
+                        item = fetchQueue.take();
+                    } finally {
+                        spinWaiting.decrementAndGet();
+                    }
+                    if (item == null || !running) {
+                        break;
+                    }
+                    inFlightPermits.acquire();
+                    lastRequestStart.set(System.currentTimeMillis());
+                    inFlight.incrementAndGet();
+
+                    final FetchItem fetchItem = item;
+                    final CrawlDatum crawlDatum = item.datum;
+                    final CrawlDatums next = new CrawlDatums();
+                    CompletableFuture<Void> future;
+                    try {
+                        future = asyncExecutor.executeAsync(crawlDatum, next, callbackExecutor);
                     } catch (Exception ex) {
-                        LOG.info("Exception", ex);
+                        future = new CompletableFuture<Void>();
+                        future.completeExceptionally(ex);
                     }
+                    future.whenCompleteAsync(new BiConsumer<Void, Throwable>() {
+                        @Override
+                        public void accept(Void result, Throwable failure) {
+                            try {
+                                if (failure instanceof CompletionException && failure.getCause() != null) {
+                                    failure = failure.getCause();
+                                }
+                                afterExecute(crawlDatum, next, failure);
+                            } finally {
+                                fetchQueue.done(fetchItem);
+                                inFlight.decrementAndGet();
+                                inFlightPermits.release();
+                            }
+                        }
+                    }, callbackExecutor);
                 }
 
+                /*等待进行中的任务结束*/
+                inFlightPermits.acquire(maxInFlight);
+            } catch (InterruptedException ex) {
+                LOG.info("stop waiting for " + inFlight.get() + " in-flight tasks");
             } catch (Exception ex) {
                 LOG.info("Exception", ex);
-
             } finally {
+                workerPool.shutdown();
                 activeThreads.decrementAndGet();
+                finishedThreads.countDown();
             }
+        }
+    }
 
+    /**
+     * 任务执行结束后的处理：过滤后续任务、设置状态并写入segment
+     *
+     * @param crawlDatum 执行的任务
+     * @param next 执行过程中得到的后续任务
+     * @param failure 执行失败时的异常，成功时为null
+     */
+    protected void afterExecute(CrawlDatum crawlDatum, CrawlDatums next, Throwable failure) {
+        if (failure == null) {
+            try {
+                if (nextFilter != null) {
+                    CrawlDatums filteredNext = new CrawlDatums(next.size());
+                    for (int i = 0; i < next.size(); i++) {
+                        CrawlDatum filterResult = nextFilter.filter(next.get(i), crawlDatum);
+                        if (filterResult != null) {
+                            filteredNext.add(filterResult);
+                        }
+                    }
+                    next = filteredNext;
+                }
+
+                LOG.info(String.format("done: %s", crawlDatum.briefInfo()));
+
+                crawlDatum.setStatus(CrawlDatum.STATUS_DB_SUCCESS);
+            } catch (Exception ex) {
+                failure = ex;
+            }
+        }
+        if (failure != null) {
+            LOG.info(String.format("failed: %s", crawlDatum.briefInfo()), failure);
+            crawlDatum.setStatus(CrawlDatum.STATUS_DB_FAILED);
         }
 
+        crawlDatum.incrExecuteCount(1);
+        crawlDatum.setExecuteTime(System.currentTimeMillis());
+        try {
+            dbManager.writeFetchSegment(crawlDatum);
+            if (crawlDatum.getStatus() == CrawlDatum.STATUS_DB_SUCCESS && !next.isEmpty()) {
+                if (continuous) {
+                    feedNext(crawlDatum, next);
+                } else {
+                    dbManager.writeParseSegment(next);
+                }
+            }
+        } catch (Exception ex) {
+            LOG.info("Exception when updating db", ex);
+        } finally {
+            if (continuous) {
+                inFlightKeys.remove(crawlDatum.key());
+            }
+        }
     }
 
     /**
@@ -318,24 +662,57 @@ public class Fetcher extends CommonConfigured{
             activeThreads = new AtomicInteger(0);
             startedThreads = new AtomicInteger(0);
             spinWaiting = new AtomicInteger(0);
-            fetchQueue = new FetchQueue();
-            feeder = new QueueFeeder(fetchQueue, dbManager, generatorFilter, 1000);
+            boolean async = fetchMode == MODE_ASYNC;
+            boolean virtual = fetchMode == MODE_VIRTUAL_THREAD;
+            if (async && !(executor instanceof AsyncExecutor)) {
+                LOG.info("executor " + executor.getClass().getName() + " is not an AsyncExecutor, use MODE_THREAD instead");
+                async = false;
+            }
+            inFlight = new AtomicInteger(0);
+            int fetcherThreadCount = (async || virtual) ? 1 : threads;
+            finishedThreads = new CountDownLatch(fetcherThreadCount);
+            if (fetchQueue == null) {
+                fetchQueue = createFetchQueue();
+            } else {
+                fetchQueue.clear();
+            }
+            LOG.info("use fetchQueue:" + fetchQueue.getClass().getName());
+            if (continuous) {
+                inFlightKeys = ConcurrentHashMap.newKeySet();
+                round = Long.toString(System.currentTimeMillis()) + "-" + ROUND_COUNTER.incrementAndGet();
+                frontier = new LinkedBlockingQueue<FetchItem>(getConf().getContinuousFrontierSize());
+                overflowed = false;
+                feeder = new ContinuousQueueFeeder(fetchQueue, dbManager, generatorFilter);
+            } else {
+                feeder = new QueueFeeder(fetchQueue, dbManager, generatorFilter);
+            }
+            feeder.scorer = scorer;
             feeder.start();
 
-            FetcherThread[] fetcherThreads = new FetcherThread[threads];
-            for (int i = 0; i < threads; i++) {
-                fetcherThreads[i] = new FetcherThread();
+            Thread[] fetcherThreads = new Thread[fetcherThreadCount];
+            for (int i = 0; i < fetcherThreadCount; i++) {
+                if (async) {
+                    fetcherThreads[i] = new AsyncFetcherThread();
+                } else if (virtual) {
+                    fetcherThreads[i] = new VirtualFetcherThread();
+                } else {
+                    fetcherThreads[i] = new FetcherThread();
+                }
                 fetcherThreads[i].start();
             }
 
-            do {
+            while (running) {
                 try {
-                    Thread.sleep(1000);
+                    if (finishedThreads.await(1000, TimeUnit.MILLISECONDS)) {
+                        break;
+                    }
                 } catch (InterruptedException ex) {
+                    break;
                 }
                 LOG.info("-activeThreads=" + activeThreads.get()
                         + ", spinWaiting=" + spinWaiting.get() + ", fetchQueue.size="
-                        + fetchQueue.getSize());
+                        + fetchQueue.getSize()
+                        + ((async || virtual) ? ", inFlight=" + inFlight.get() : ""));
 
                 if (!feeder.isAlive() && fetchQueue.getSize() < 5) {
                     fetchQueue.dump();
@@ -346,37 +723,37 @@ public class Fetcher extends CommonConfigured{
                     break;
                 }
 
-            } while (running && (startedThreads.get() != threads || activeThreads.get() > 0));
+            }
             running = false;
-            long waitThreadEndStartTime = System.currentTimeMillis();
+            // 停止feeder并标记队列结束，唤醒等待任务的线程
+            feeder.stopFeeder();
             if (activeThreads.get() > 0) {
                 LOG.info("wait for activeThreads to end");
             }
             /*等待存活线程结束*/
-            while (activeThreads.get() > 0) {
-                LOG.info("-activeThreads=" + activeThreads.get());
-                try {
-                    Thread.sleep(500);
-                } catch (Exception ex) {
+            boolean terminated = awaitTermination(getConf().getWaitThreadEndTime());
+            if (!terminated) {
+                LOG.info("interrupt threads");
+                // 阻塞在网络IO上的线程不响应中断，先取消进行中的请求
+                if (executor instanceof Cancelable) {
+                    ((Cancelable) executor).cancelAll();
                 }
-                if (System.currentTimeMillis() - waitThreadEndStartTime > getConf().getWaitThreadEndTime()) {
-                    LOG.info("kill threads");
-                    for (int i = 0; i < fetcherThreads.length; i++) {
-                        if (fetcherThreads[i].isAlive()) {
-                            try {
-                                fetcherThreads[i].stop();
-                                LOG.info("kill thread " + i);
-                            } catch (Exception ex) {
-                                LOG.info("Exception", ex);
-                            }
-                        }
+                for (int i = 0; i < fetcherThreads.length; i++) {
+                    if (fetcherThreads[i].isAlive()) {
+                        // 协作式取消：阻塞在take/sleep/Semaphore上的线程会立即退出
+                        fetcherThreads[i].interrupt();
+                        LOG.info("interrupt thread " + i);
                     }
-                    break;
                 }
+                terminated = awaitTermination(getConf().getWaitThreadEndTime());
+            }
+            if (terminated) {
+                LOG.info("clear all activeThread");
+                fetchQueue.clear();
+            } else {
+                // 仍在执行的任务结束后写入segment会失败，不影响crawldb
+                LOG.info("give up " + activeThreads.get() + " hung threads and " + inFlight.get() + " in-flight tasks");
             }
-            LOG.info("clear all activeThread");
-            feeder.stopFeeder();
-            fetchQueue.clear();
         } finally {
             if(feeder!=null) {
                 feeder.closeGenerator();
@@ -384,7 +761,56 @@ public class Fetcher extends CommonConfigured{
             dbManager.closeSegmentWriter();
             LOG.info("close segmentWriter:" + dbManager.getClass().getName());
         }
-        return feeder.generator.getTotalGenerate();
+        if (continuous && frontier != null && !frontier.isEmpty()) {
+            // 被停止时frontier中剩余的链接已在crawldb中，下次爬取时生成
+            overflowed = true;
+            frontier.clear();
+        }
+        return feeder.getTotalGenerate();
+    }
+
+    /**
+     * 等待抓取线程和异步、虚拟线程模式下进行中的任务结束
+     *
+     * @param timeout 最长等待时间(毫秒)
+     * @return 是否全部结束
+     */
+    private boolean awaitTermination(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (activeThreads.get() > 0 || inFlight.get() > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            LOG.info("-activeThreads=" + activeThreads.get() + ", inFlight=" + inFlight.get());
+            try {
+                if (!finishedThreads.await(Math.min(500, remaining), TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                if (inFlight.get() > 0) {
+                    Thread.sleep(Math.min(100, remaining));
+                }
+            } catch (InterruptedException ex) {
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 创建默认的抓取队列，容量由Configuration.KEY_FETCH_QUEUE_SIZE指定
+     * 设置了KEY_HOST_MAX_CONCURRENCY或KEY_HOST_DELAY时使用按host调度的HostFetchQueue，
+     * 否则使用LockFreeFetchQueue
+     *
+     * @return 抓取队列
+     */
+    protected FetchQueue createFetchQueue() {
+        int hostMaxConcurrency = getConf().getHostMaxConcurrency();
+        int hostDelay = getConf().getHostDelay();
+        if (hostMaxConcurrency > 0 || hostDelay > 0) {
+            return new HostFetchQueue(getConf().getFetchQueueSize(),
+                    hostMaxConcurrency > 0 ? hostMaxConcurrency : Integer.MAX_VALUE, hostDelay);
+        }
+        return new LockFreeFetchQueue(getConf().getFetchQueueSize());
     }
 
     volatile boolean running;
@@ -414,6 +840,58 @@ public class Fetcher extends CommonConfigured{
         this.threads = threads;
     }
 
+    public int getFetchMode() {
+        return fetchMode;
+    }
+
+    /**
+     * 设置抓取模式，MODE_THREAD、MODE_ASYNC或MODE_VIRTUAL_THREAD
+     * MODE_ASYNC要求执行器实现AsyncExecutor，threads为解析线程数；
+     * MODE_VIRTUAL_THREAD下threads为同时执行的任务数上限，可以设置到上万，
+     * JDK 21以下不支持虚拟线程，同时执行的任务数不超过MAX_FALLBACK_THREADS
+     *
+     * @param fetchMode 抓取模式
+     */
+    public void setFetchMode(int fetchMode) {
+        this.fetchMode = fetchMode;
+    }
+
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    /**
+     * 设置是否使用持续爬取模式
+     * 持续爬取模式下执行过程中发现的新链接在线与crawldb去重后写入crawldb，并立即加入抓取队列，
+     * 不需要等待本轮所有任务结束和合并，任务与种子之间的跳数记录在meta的META_KEY_HOP中，
+     * 在线写入时所在的轮次记录在META_KEY_ROUND中，生成器在同一轮中不会再次生成这些任务
+     *
+     * @param continuous 是否使用持续爬取模式
+     */
+    public void setContinuous(boolean continuous) {
+        this.continuous = continuous;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * 设置持续爬取模式下的最大深度，跳数不小于maxDepth的链接只写入crawldb，不会被抓取
+     *
+     * @param maxDepth 最大深度，种子的深度为0
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return 持续爬取模式下是否有新链接因frontier已满等原因没有在本轮抓取，需要再次生成
+     */
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
     public DBManager getDBManager() {
         return dbManager;
     }
@@ -427,9 +905,35 @@ public class Fetcher extends CommonConfigured{
         return nextFilter;
     }
 
+    public Scorer getScorer() {
+        return scorer;
+    }
+
+    /**
+     * 设置任务优先级分数的计算方法，设置了TOP_N时优先生成分数高的任务
+     *
+     * @param scorer 计算任务优先级分数，为null时按crawldb中的顺序生成
+     */
+    public void setScorer(Scorer scorer) {
+        this.scorer = scorer;
+    }
+
     public void setNextFilter(NextFilter nextFilter) {
         this.nextFilter = nextFilter;
     }
+
+    public FetchQueue getFetchQueue() {
+        return fetchQueue;
+    }
+
+    /**
+     * 设置抓取队列，为null时使用默认的LockFreeFetchQueue
+     *
+     * @param fetchQueue 抓取队列
+     */
+    public void setFetchQueue(FetchQueue fetchQueue) {
+        this.fetchQueue = fetchQueue;
+    }
     
     
 
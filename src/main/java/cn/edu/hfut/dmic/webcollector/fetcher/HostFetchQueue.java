@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.fetcher;
+
+import cn.edu.hfut.dmic.webcollector.util.UrlUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按host划分的抓取队列，用于控制每个host的抓取频率
+ * 每个host有独立的队列、最大并发数和两次请求之间的最小间隔，
+ * 可以抓取的host按下次可抓取时间放在一个小顶堆中，
+ * take()只会等待最早可以抓取的host，不会因为某个慢host而阻塞其他host
+ * 任务执行结束后需要调用done()释放host的并发数，
+ * 没有任务的host在请求间隔过去之后被移除，长时间运行时host的数量不会无限增长
+ *
+ * @author hu
+ */
+public class HostFetchQueue implements FetchQueue {
+
+    public static final Logger LOG = LoggerFactory.getLogger(HostFetchQueue.class);
+
+    protected static class HostQueue {
+
+        public String host;
+        public ArrayDeque<Fetcher.FetchItem> items = new ArrayDeque<Fetcher.FetchItem>();
+        // 正在执行的任务数
+        public int active = 0;
+        // 下次可以开始抓取的时间
+        public long nextFetchTime = 0;
+        public boolean inHeap = false;
+
+        public HostQueue(String host) {
+            this.host = host;
+        }
+    }
+
+    private static class IdleHost {
+
+        final HostQueue hostQueue;
+        // 进入空闲时的nextFetchTime，HostQueue之后可能被再次使用
+        final long expireTime;
+
+        IdleHost(HostQueue hostQueue) {
+            this.hostQueue = hostQueue;
+            this.expireTime = hostQueue.nextFetchTime;
+        }
+    }
+
+    protected final int capacity;
+    protected int maxConcurrencyPerHost;
+    protected long delay;
+
+    private final HashMap<String, HostQueue> hostQueues = new HashMap<String, HostQueue>();
+    private final HashMap<String, Integer> hostConcurrencies = new HashMap<String, Integer>();
+    private final HashMap<String, Long> hostDelays = new HashMap<String, Long>();
+    private final PriorityQueue<HostQueue> readyHeap = new PriorityQueue<HostQueue>(16, new Comparator<HostQueue>() {
+        @Override
+        public int compare(HostQueue o1, HostQueue o2) {
+            return Long.compare(o1.nextFetchTime, o2.nextFetchTime);
+        }
+    });
+
+    // 没有任务和正在执行的任务、但请求间隔还未过去的host，按到期时间排列
+    private final PriorityQueue<IdleHost> idleHosts = new PriorityQueue<IdleHost>(16, new Comparator<IdleHost>() {
+        @Override
+        public int compare(IdleHost o1, IdleHost o2) {
+            return Long.compare(o1.expireTime, o2.expireTime);
+        }
+    });
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition changed = lock.newCondition();
+
+    private int size = 0;
+    private int totalSize = 0;
+    private boolean finished = false;
+
+    /**
+     * @param capacity 队列中所有host的任务总数上限
+     * @param maxConcurrencyPerHost 每个host同时执行的最大任务数
+     * @param delay 同一host两次请求开始之间的最小间隔(毫秒)
+     */
+    public HostFetchQueue(int capacity, int maxConcurrencyPerHost, long delay) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (maxConcurrencyPerHost <= 0) {
+            throw new IllegalArgumentException("maxConcurrencyPerHost must be positive: " + maxConcurrencyPerHost);
+        }
+        this.capacity = capacity;
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+        this.delay = delay;
+    }
+
+    /**
+     * 单独设置某个host的最大并发数
+     */
+    public void setHostConcurrency(String host, int maxConcurrency) {
+        lock.lock();
+        try {
+            hostConcurrencies.put(host, maxConcurrency);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 单独设置某个host的请求间隔(毫秒)，例如robots.txt中的Crawl-delay
+     */
+    public void setHostDelay(String host, long delay) {
+        lock.lock();
+        try {
+            hostDelays.put(host, delay);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected int concurrencyOf(String host) {
+        Integer concurrency = hostConcurrencies.get(host);
+        return concurrency == null ? maxConcurrencyPerHost : concurrency;
+    }
+
+    protected long delayOf(String host) {
+        Long hostDelay = hostDelays.get(host);
+        return hostDelay == null ? delay : hostDelay;
+    }
+
+    // 以下方法需要持有lock
+
+    private boolean isIdle(HostQueue hostQueue) {
+        return hostQueue.active <= 0 && hostQueue.items.isEmpty();
+    }
+
+    /**
+     * 移除请求间隔已经过去的空闲host，之后再出现的同一host重新创建队列
+     * 空闲期间被再次使用的host不移除，它再次空闲时会重新加入idleHosts
+     */
+    private void evictIdleHosts(long now) {
+        IdleHost idleHost;
+        while ((idleHost = idleHosts.peek()) != null && idleHost.expireTime <= now) {
+            idleHosts.poll();
+            HostQueue hostQueue = idleHost.hostQueue;
+            if (isIdle(hostQueue) && hostQueue.nextFetchTime <= now
+                    && hostQueues.get(hostQueue.host) == hostQueue) {
+                hostQueues.remove(hostQueue.host);
+            }
+        }
+    }
+
+    private void offerToHeap(HostQueue hostQueue) {
+        if (!hostQueue.inHeap && !hostQueue.items.isEmpty()
+                && hostQueue.active < concurrencyOf(hostQueue.host)) {
+            hostQueue.inHeap = true;
+            readyHeap.add(hostQueue);
+        }
+    }
+
+    private Fetcher.FetchItem pollReady(long now) {
+        HostQueue hostQueue = readyHeap.peek();
+        if (hostQueue == null || hostQueue.nextFetchTime > now) {
+            return null;
+        }
+        readyHeap.poll();
+        hostQueue.inHeap = false;
+        Fetcher.FetchItem item = hostQueue.items.poll();
+        hostQueue.active++;
+        hostQueue.nextFetchTime = now + delayOf(hostQueue.host);
+        offerToHeap(hostQueue);
+        size--;
+        notFull.signal();
+        return item;
+    }
+
+    @Override
+    public void put(Fetcher.FetchItem item) throws InterruptedException {
+        if (item == null) {
+            return;
+        }
+        String host = UrlUtils.hostOf(item.datum.url());
+        lock.lockInterruptibly();
+        try {
+            while (size >= capacity) {
+                notFull.await();
+            }
+            evictIdleHosts(System.currentTimeMillis());
+            HostQueue hostQueue = hostQueues.get(host);
+            if (hostQueue == null) {
+                hostQueue = new HostQueue(host);
+                hostQueues.put(host, hostQueue);
+            }
+            hostQueue.items.add(item);
+            size++;
+            totalSize++;
+            offerToHeap(hostQueue);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Fetcher.FetchItem take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                evictIdleHosts(now);
+                Fetcher.FetchItem item = pollReady(now);
+                if (item != null) {
+                    if (!readyHeap.isEmpty()) {
+                        changed.signal();
+                    }
+                    return item;
+                }
+                if (finished && size == 0) {
+                    changed.signalAll();
+                    return null;
+                }
+                HostQueue head = readyHeap.peek();
+                if (head == null) {
+                    changed.await();
+                } else {
+                    changed.await(head.nextFetchTime - now, TimeUnit.MILLISECONDS);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Fetcher.FetchItem poll() {
+        lock.lock();
+        try {
+            return pollReady(System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void done(Fetcher.FetchItem item) {
+        String host = UrlUtils.hostOf(item.datum.url());
+        lock.lock();
+        try {
+            HostQueue hostQueue = hostQueues.get(host);
+            if (hostQueue == null) {
+                return;
+            }
+            hostQueue.active--;
+            if (isIdle(hostQueue)) {
+                if (hostQueue.nextFetchTime <= System.currentTimeMillis()) {
+                    hostQueues.remove(host);
+                } else {
+                    idleHosts.add(new IdleHost(hostQueue));
+                }
+                return;
+            }
+            offerToHeap(hostQueue);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getTotalSize() {
+        lock.lock();
+        try {
+            return totalSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 当前队列中有任务或正在执行任务的host数量
+     */
+    public int getHostCount() {
+        lock.lock();
+        try {
+            return hostQueues.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        lock.lock();
+        try {
+            return finished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            hostQueues.clear();
+            readyHeap.clear();
+            idleHosts.clear();
+            size = 0;
+            finished = false;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void dump() {
+        lock.lock();
+        try {
+            for (HostQueue hostQueue : hostQueues.values()) {
+                LOG.info("  host=" + hostQueue.host + ", size=" + hostQueue.items.size()
+                        + ", active=" + hostQueue.active);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.fetcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界的多生产者多消费者抓取队列
+ * 入队和出队基于环形数组和CAS（每个槽位带序号），不使用全局锁，
+ * 队列满/空时通过Semaphore阻塞等待，因此生产者和消费者只在计数上竞争
+ * finish()之后，take()在队列取空时返回null
+ *
+ * @author hu
+ */
+public class LockFreeFetchQueue implements FetchQueue {
+
+    public static final Logger LOG = LoggerFactory.getLogger(LockFreeFetchQueue.class);
+
+    protected final int capacity;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<Fetcher.FetchItem> slots;
+    private final AtomicLong enqueuePos = new AtomicLong(0);
+    private final AtomicLong dequeuePos = new AtomicLong(0);
+
+    // 空闲位置数和可取出任务数
+    private final Semaphore freePermits;
+    private final Semaphore itemPermits;
+
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicInteger totalSize = new AtomicInteger(0);
+
+    // finish时释放的许可数，保证所有等待的消费者都能被唤醒
+    private static final int FINISH_PERMITS = Integer.MAX_VALUE / 2;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    public LockFreeFetchQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        int ringSize = 1;
+        while (ringSize < capacity) {
+            ringSize <<= 1;
+        }
+        this.mask = ringSize - 1;
+        this.sequences = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            sequences.set(i, i);
+        }
+        this.slots = new AtomicReferenceArray<Fetcher.FetchItem>(ringSize);
+        this.freePermits = new Semaphore(capacity);
+        this.itemPermits = new Semaphore(0);
+    }
+
+    private boolean offerToRing(Fetcher.FetchItem item) {
+        long pos = enqueuePos.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    slots.set(index, item);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = enqueuePos.get();
+            } else if (diff < 0) {
+                // 槽位上一轮的任务已被领取但还未释放
+                return false;
+            } else {
+                pos = enqueuePos.get();
+            }
+        }
+    }
+
+    private Fetcher.FetchItem pollFromRing() {
+        long pos = dequeuePos.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    Fetcher.FetchItem item = slots.get(index);
+                    slots.set(index, null);
+                    sequences.set(index, pos + mask + 1);
+                    return item;
+                }
+                pos = dequeuePos.get();
+            } else if (diff < 0) {
+                // 槽位已被生产者领取但还未写入
+                return null;
+            } else {
+                pos = dequeuePos.get();
+            }
+        }
+    }
+
+    /**
+     * 调用前必须已经获得一个itemPermits
+     * 返回null表示队列已finish且已取空
+     */
+    private Fetcher.FetchItem pollAcquired() {
+        Fetcher.FetchItem item;
+        while ((item = pollFromRing()) == null) {
+            // finish之后不会再有生产者写入，取不到即为空
+            if (finished.get()) {
+                itemPermits.release();
+                return null;
+            }
+            Thread.yield();
+        }
+        size.decrementAndGet();
+        freePermits.release();
+        return item;
+    }
+
+    @Override
+    public void put(Fetcher.FetchItem item) throws InterruptedException {
+        if (item == null) {
+            return;
+        }
+        freePermits.acquire();
+        while (!offerToRing(item)) {
+            Thread.yield();
+        }
+        size.incrementAndGet();
+        totalSize.incrementAndGet();
+        itemPermits.release();
+    }
+
+    @Override
+    public Fetcher.FetchItem take() throws InterruptedException {
+        itemPermits.acquire();
+        return pollAcquired();
+    }
+
+    @Override
+    public Fetcher.FetchItem poll() {
+        if (!itemPermits.tryAcquire()) {
+            return null;
+        }
+        return pollAcquired();
+    }
+
+    @Override
+    public void done(Fetcher.FetchItem item) {
+    }
+
+    @Override
+    public int getSize() {
+        return size.get();
+    }
+
+    @Override
+    public int getTotalSize() {
+        return totalSize.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void finish() {
+        if (finished.compareAndSet(false, true)) {
+            itemPermits.release(FINISH_PERMITS);
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    @Override
+    public void clear() {
+        while (pollFromRing() != null) {
+            freePermits.release();
+        }
+        itemPermits.drainPermits();
+        size.set(0);
+        finished.set(false);
+    }
+
+    @Override
+    public void dump() {
+        long start = dequeuePos.get();
+        long end = enqueuePos.get();
+        for (long pos = start; pos < end; pos++) {
+            Fetcher.FetchItem it = slots.get((int) (pos & mask));
+            if (it != null) {
+                LOG.info("  " + (pos - start) + ". " + it.datum.url());
+            }
+        }
+    }
+}
@@ -6,17 +6,26 @@ import cn.edu.hfut.dmic.webcollector.model.Links;
 import cn.edu.hfut.dmic.webcollector.model.Page;
 import cn.edu.hfut.dmic.webcollector.util.ReflectionUtils;
 import cn.edu.hfut.dmic.webcollector.util.RegexRule;
-import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.regex.Pattern;
 
+/**
+ * 根据Visitor中的注解将Page分发给对应的方法
+ * 分发表在构造时生成：正则预编译，方法转换为绑定了visitor的MethodHandle，
+ * 匹配顺序按方法名排序，不依赖getDeclaredMethods的返回顺序
+ */
 public class VisitorMethodDispatcher extends DefaultConfigured{
 
     public static final Logger LOG = LoggerFactory.getLogger(VisitorMethodDispatcher.class);
@@ -28,10 +37,43 @@ public class VisitorMethodDispatcher extends DefaultConfigured{
     protected Visitor visitor;
 
 
-    protected HashMap<String, Method> typeMethodMap;
-    protected HashMap<String, Method> urlRegexMethodMap;
-    protected HashMap<RegexRule, Method> urlRegexRuleMethodMap;
-    protected HashMap<Integer, Method> codeMethodMap;
+    /**
+     * 分发表中的一项，handle已绑定visitor，类型为(Page, CrawlDatums)void
+     */
+    public static class VisitorMethod {
+
+        public final Method method;
+        public final MethodHandle handle;
+
+        public VisitorMethod(Visitor visitor, Method method) throws IllegalAccessException {
+            this.method = method;
+            try {
+                // Visitor常为匿名类或非public类，需要先关闭访问检查
+                method.setAccessible(true);
+            } catch (RuntimeException ex) {
+                LOG.debug("cannot set accessible: " + ReflectionUtils.getFullMethodName(method), ex);
+            }
+            this.handle = MethodHandles.lookup().unreflect(method)
+                    .bindTo(visitor)
+                    .asType(MethodType.methodType(void.class, Page.class, CrawlDatums.class));
+        }
+
+        public void invoke(Page page, CrawlDatums next) throws InvocationTargetException {
+            try {
+                handle.invokeExact(page, next);
+            } catch (Throwable ex) {
+                // 与Method.invoke保持一致，visitor抛出的异常包装为InvocationTargetException
+                throw new InvocationTargetException(ex);
+            }
+        }
+    }
+
+    protected HashMap<String, VisitorMethod> typeMethodMap;
+    protected ArrayList<Pattern> urlPatterns;
+    protected ArrayList<VisitorMethod> urlPatternMethods;
+    protected ArrayList<RegexRule> urlRegexRules;
+    protected ArrayList<VisitorMethod> urlRegexRuleMethods;
+    protected HashMap<Integer, VisitorMethod> codeMethodMap;
 
     public void checkMethod(Method method) throws Exception {
         Class[] paramTypes = method.getParameterTypes();
@@ -50,70 +92,85 @@ public class VisitorMethodDispatcher extends DefaultConfigured{
     }
 
     Method visitMethod;
-    Method beforeVisitMethod;
-    Method afterParseMethod;
+    VisitorMethod defaultVisitMethod;
+    VisitorMethod beforeVisitMethod;
+    VisitorMethod afterParseMethod;
 
     public VisitorMethodDispatcher(Visitor visitor, boolean autoParse, RegexRule regexRule) throws Exception {
         this.visitor = visitor;
         this.autoParse = autoParse;
         this.regexRule = regexRule;
-        typeMethodMap = new HashMap<String, Method>();
-        urlRegexMethodMap = new HashMap<String, Method>();
-        urlRegexRuleMethodMap = new HashMap<RegexRule, Method>();
-        codeMethodMap = new HashMap<Integer, Method>();
+        typeMethodMap = new HashMap<String, VisitorMethod>();
+        urlPatterns = new ArrayList<Pattern>();
+        urlPatternMethods = new ArrayList<VisitorMethod>();
+        urlRegexRules = new ArrayList<RegexRule>();
+        urlRegexRuleMethods = new ArrayList<VisitorMethod>();
+        codeMethodMap = new HashMap<Integer, VisitorMethod>();
 
         visitMethod = visitor.getClass().getMethod("visit", Page.class, CrawlDatums.class);
+        defaultVisitMethod = new VisitorMethod(visitor, visitMethod);
 
         Method[] methods = visitor.getClass().getDeclaredMethods();
+        Arrays.sort(methods, new Comparator<Method>() {
+            @Override
+            public int compare(Method m1, Method m2) {
+                int result = m1.getName().compareTo(m2.getName());
+                return result != 0 ? result : m1.toString().compareTo(m2.toString());
+            }
+        });
 
 
         for(Method method: methods){
 
+            // 同一个方法可能有多个注解，共用一个VisitorMethod
+            VisitorMethod visitorMethod = null;
+
             Visitor.BeforeVisit beforeVisit = method.getAnnotation(Visitor.BeforeVisit.class);
             if(beforeVisit != null){
-                checkMethod(method);
-                beforeVisitMethod = method;
+                visitorMethod = createVisitorMethod(method, visitorMethod);
+                beforeVisitMethod = visitorMethod;
             }
 
             Visitor.AfterParse afterParse = method.getAnnotation(Visitor.AfterParse.class);
             if(afterParse != null){
-                checkMethod(method);
-                afterParseMethod = method;
+                visitorMethod = createVisitorMethod(method, visitorMethod);
+                afterParseMethod = visitorMethod;
             }
 
 
             Visitor.MatchType matchType = method.getAnnotation(Visitor.MatchType.class);
             if(matchType != null){
-                checkMethod(method);
+                visitorMethod = createVisitorMethod(method, visitorMethod);
                 for(String type: matchType.types()){
-                    typeMethodMap.put(type, method);
+                    typeMethodMap.put(type, visitorMethod);
                 }
             }
 
             Visitor.MatchNullType matchNullType = method.getAnnotation(Visitor.MatchNullType.class);
             if(matchNullType != null){
-                checkMethod(method);
-                typeMethodMap.put(null, method);
+                visitorMethod = createVisitorMethod(method, visitorMethod);
+                typeMethodMap.put(null, visitorMethod);
             }
 
             Visitor.MatchUrl matchUrl = method.getAnnotation(Visitor.MatchUrl.class);
             if(matchUrl != null){
-                checkMethod(method);
-                urlRegexMethodMap.put(matchUrl.urlRegex(), method);
+                visitorMethod = createVisitorMethod(method, visitorMethod);
+                urlPatterns.add(Pattern.compile(matchUrl.urlRegex()));
+                urlPatternMethods.add(visitorMethod);
             }
 
             Visitor.MatchUrlRegexRule matchUrlRegexRule= method.getAnnotation(Visitor.MatchUrlRegexRule.class);
             if(matchUrlRegexRule != null){
-                checkMethod(method);
-                RegexRule urlRegexRule = new RegexRule(matchUrlRegexRule.urlRegexRule());
-                urlRegexRuleMethodMap.put(urlRegexRule, method);
+                visitorMethod = createVisitorMethod(method, visitorMethod);
+                urlRegexRules.add(new RegexRule(matchUrlRegexRule.urlRegexRule()));
+                urlRegexRuleMethods.add(visitorMethod);
             }
 
             Visitor.MatchCode matchCode = method.getAnnotation(Visitor.MatchCode.class);
             if(matchCode != null){
-                checkMethod(method);
+                visitorMethod = createVisitorMethod(method, visitorMethod);
                 for(int code: matchCode.codes()){
-                    codeMethodMap.put(code, method);
+                    codeMethodMap.put(code, visitorMethod);
                 }
             }
 
@@ -167,57 +224,81 @@ public class VisitorMethodDispatcher extends DefaultConfigured{
 //    }
 
 
-    public Method getMethodByCode(Page page){
-        Method method = codeMethodMap.get(page.code());
-        return method;
+    protected VisitorMethod createVisitorMethod(Method method, VisitorMethod created) throws Exception {
+        if(created != null){
+            return created;
+        }
+        checkMethod(method);
+        return new VisitorMethod(visitor, method);
     }
 
-    public Method getMethodByType(Page page){
-        String type = page.crawlDatum().type();
-        return typeMethodMap.get(type);
+    private static Method methodOf(VisitorMethod visitorMethod){
+        return visitorMethod == null ? null : visitorMethod.method;
     }
 
-    public Method getMethodByUrlRegex(Page page){
-        for(Map.Entry<String, Method> entry: urlRegexMethodMap.entrySet()){
-            String urlRegex = entry.getKey();
-            if(page.matchUrl(urlRegex)){
-                return entry.getValue();
+    protected VisitorMethod getVisitorMethodByCode(Page page){
+        return codeMethodMap.isEmpty() ? null : codeMethodMap.get(page.code());
+    }
+
+    protected VisitorMethod getVisitorMethodByType(Page page){
+        return typeMethodMap.isEmpty() ? null : typeMethodMap.get(page.crawlDatum().type());
+    }
+
+    protected VisitorMethod getVisitorMethodByUrlRegex(Page page){
+        for(int i = 0; i < urlPatterns.size(); i++){
+            if(urlPatterns.get(i).matcher(page.url()).matches()){
+                return urlPatternMethods.get(i);
             }
         }
         return null;
     }
-    public Method getMethodByUrlRegexRule(Page page){
-        for(Map.Entry<RegexRule, Method> entry: urlRegexRuleMethodMap.entrySet()){
-            RegexRule regexRule = entry.getKey();
-            if(page.matchUrlRegexRule(regexRule)){
-                return entry.getValue();
+
+    protected VisitorMethod getVisitorMethodByUrlRegexRule(Page page){
+        for(int i = 0; i < urlRegexRules.size(); i++){
+            if(page.matchUrlRegexRule(urlRegexRules.get(i))){
+                return urlRegexRuleMethods.get(i);
             }
         }
         return null;
     }
 
+    public Method getMethodByCode(Page page){
+        return methodOf(getVisitorMethodByCode(page));
+    }
+
+    public Method getMethodByType(Page page){
+        return methodOf(getVisitorMethodByType(page));
+    }
+
+    public Method getMethodByUrlRegex(Page page){
+        return methodOf(getVisitorMethodByUrlRegex(page));
+    }
+
+    public Method getMethodByUrlRegexRule(Page page){
+        return methodOf(getVisitorMethodByUrlRegexRule(page));
+    }
+
     public void dispatch(Page page, CrawlDatums next) throws InvocationTargetException, IllegalAccessException {
-        HashSet<Method> invokedMethods = new HashSet<Method>();
 
         if(beforeVisitMethod != null){
-            beforeVisitMethod.invoke(visitor, page, next);
+            beforeVisitMethod.invoke(page, next);
         }
 
-        Method method;
-        method = getMethodByCode(page);
+        VisitorMethod method;
+        method = getVisitorMethodByCode(page);
         if(method == null){
-            method = getMethodByType(page);
+            method = getVisitorMethodByType(page);
         }
         if(method == null){
-            method = getMethodByUrlRegex(page);
+            method = getVisitorMethodByUrlRegex(page);
         }
         if(method == null){
-            method = getMethodByUrlRegexRule(page);
+            method = getVisitorMethodByUrlRegexRule(page);
         }
         if(method == null){
-            method = visitMethod;
+            method = defaultVisitMethod;
         }
-        method.invoke(visitor, page, next);
+        method.invoke(page, next);
 //        visitor.visit(page, next);
 
         if (autoParse && !regexRule.isEmpty()) {
@@ -225,7 +306,7 @@ public class VisitorMethodDispatcher extends DefaultConfigured{
         }
 
         if(afterParseMethod != null){
-            afterParseMethod.invoke(visitor, page, next);
+            afterParseMethod.invoke(page, next);
         }
     }
 
@@ -237,12 +318,17 @@ public class VisitorMethodDispatcher extends DefaultConfigured{
         this.autoParse = autoParse;
     }
 
+    /**
+     * visitor调用过page.doc()时使用已有的DOM树，否则流式扫描源码抽取链接
+     */
     protected void parseLink(Page page, CrawlDatums next) {
         String conteType = page.contentType();
         if (conteType != null && conteType.contains("text/html")) {
-            Document doc = page.doc();
-            if (doc != null) {
-                Links links = new Links().addByRegex(doc, regexRule, getConf().getAutoDetectImg());
+            if (page.hasDoc()) {
+                Links links = new Links().addByRegex(page.doc(), regexRule, getConf().getAutoDetectImg());
+                next.add(links);
+            } else if (page.html() != null) {
+                Links links = new Links().addByRegex(page.html(), page.url(), regexRule, getConf().getAutoDetectImg());
                 next.add(links);
             }
         }
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.model;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * CrawlDatum中metaData的紧凑存储
+ * meta通常只有几个键值对，这里用平铺的数组保存并线性查找，
+ * 整数、浮点数和布尔值保存在long数组中，不创建包装对象和Gson对象
+ *
+ * @author hu
+ */
+public class CompactMeta implements Serializable {
+
+    public static final byte TYPE_STRING = 1;
+    public static final byte TYPE_LONG = 2;
+    public static final byte TYPE_DOUBLE = 3;
+    public static final byte TYPE_BOOLEAN = 4;
+    // 其他类型(null、嵌套的对象和数组等)以JsonElement保存
+    public static final byte TYPE_JSON = 5;
+
+    private String[] keys;
+    private byte[] types;
+    private long[] primitives;
+    private Object[] objects;
+    private int size = 0;
+
+    public CompactMeta() {
+        this(4);
+    }
+
+    public CompactMeta(int capacity) {
+        keys = new String[capacity];
+        types = new byte[capacity];
+        primitives = new long[capacity];
+        objects = new Object[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int indexOf(String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String key(int index) {
+        return keys[index];
+    }
+
+    public byte type(int index) {
+        return types[index];
+    }
+
+    public long longValue(int index) {
+        return primitives[index];
+    }
+
+    public double doubleValue(int index) {
+        return Double.longBitsToDouble(primitives[index]);
+    }
+
+    public boolean booleanValue(int index) {
+        return primitives[index] != 0;
+    }
+
+    public String stringValue(int index) {
+        return (String) objects[index];
+    }
+
+    public JsonElement jsonValue(int index) {
+        return (JsonElement) objects[index];
+    }
+
+    private int slot(String key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return index;
+        }
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            types = Arrays.copyOf(types, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        keys[size] = key;
+        return size++;
+    }
+
+    public void putString(String key, String value) {
+        if (value == null) {
+            putJson(key, JsonNull.INSTANCE);
+            return;
+        }
+        int index = slot(key);
+        types[index] = TYPE_STRING;
+        objects[index] = value;
+    }
+
+    public void putLong(String key, long value) {
+        int index = slot(key);
+        types[index] = TYPE_LONG;
+        primitives[index] = value;
+        objects[index] = null;
+    }
+
+    public void putDouble(String key, double value) {
+        int index = slot(key);
+        types[index] = TYPE_DOUBLE;
+        primitives[index] = Double.doubleToLongBits(value);
+        objects[index] = null;
+    }
+
+    public void putBoolean(String key, boolean value) {
+        int index = slot(key);
+        types[index] = TYPE_BOOLEAN;
+        primitives[index] = value ? 1 : 0;
+        objects[index] = null;
+    }
+
+    public void putJson(String key, JsonElement value) {
+        int index = slot(key);
+        types[index] = TYPE_JSON;
+        objects[index] = (value == null) ? JsonNull.INSTANCE : value;
+    }
+
+    /**
+     * 返回index处的值对应的JsonElement
+     *
+     * @param index 位置
+     * @param copy 对于嵌套的对象和数组是否深拷贝
+     * @return JsonElement
+     */
+    public JsonElement element(int index, boolean copy) {
+        switch (types[index]) {
+            case TYPE_STRING:
+                return new JsonPrimitive((String) objects[index]);
+            case TYPE_LONG:
+                return new JsonPrimitive(primitives[index]);
+            case TYPE_DOUBLE:
+                return new JsonPrimitive(doubleValue(index));
+            case TYPE_BOOLEAN:
+                return new JsonPrimitive(booleanValue(index));
+            default:
+                JsonElement element = (JsonElement) objects[index];
+                return copy ? element.deepCopy() : element;
+        }
+    }
+
+    /**
+     * @param copy 对于嵌套的对象和数组是否深拷贝
+     * @return 包含所有键值对的JsonObject
+     */
+    public JsonObject toJsonObject(boolean copy) {
+        JsonObject jsonObject = new JsonObject();
+        for (int i = 0; i < size; i++) {
+            jsonObject.add(keys[i], element(i, copy));
+        }
+        return jsonObject;
+    }
+
+    public String getString(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        if (types[index] == TYPE_STRING) {
+            return (String) objects[index];
+        }
+        JsonElement element = element(index, false);
+        return element.isJsonNull() ? null : element.getAsString();
+    }
+
+    /**
+     * 获取key对应的值，不存在时抛出NullPointerException(与JsonObject.get(key).getAsXXX()一致)
+     */
+    private int require(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            throw new NullPointerException("meta not found: " + key);
+        }
+        return index;
+    }
+
+    public int getInt(String key) {
+        int index = require(key);
+        return types[index] == TYPE_LONG ? (int) primitives[index] : element(index, false).getAsInt();
+    }
+
+    public long getLong(String key) {
+        int index = require(key);
+        return types[index] == TYPE_LONG ? primitives[index] : element(index, false).getAsLong();
+    }
+
+    public double getDouble(String key) {
+        int index = require(key);
+        if (types[index] == TYPE_DOUBLE) {
+            return doubleValue(index);
+        } else if (types[index] == TYPE_LONG) {
+            return primitives[index];
+        }
+        return element(index, false).getAsDouble();
+    }
+
+    public boolean getBoolean(String key) {
+        int index = require(key);
+        return types[index] == TYPE_BOOLEAN ? booleanValue(index) : element(index, false).getAsBoolean();
+    }
+}
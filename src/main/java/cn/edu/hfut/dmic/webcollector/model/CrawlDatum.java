@@ -51,6 +51,8 @@ public class CrawlDatum implements Serializable, MetaGetter, MetaSetter<CrawlDat
 
     private int status = STATUS_DB_UNEXECUTED;
     private int executeCount = 0;
+    // 优先级分数，设置了Scorer和TOP_N时可用于优先生成分数高的任务
+    private double score = 0;
     /**
      * 在WebCollector 2.5之后，不再根据URL去重，而是根据key去重
      * 可以通过getKey()方法获得CrawlDatum的key,如果key为null,getKey()方法会返回URL
@@ -62,8 +64,13 @@ public class CrawlDatum implements Serializable, MetaGetter, MetaSetter<CrawlDat
      * 在WebCollector 2.5之后，可以为每个CrawlDatum添加附加信息metaData
      * 附加信息并不是为了持久化数据，而是为了能够更好地定制爬取任务
      * 在visit方法中，可以通过page.getMetaData()方法来访问CrawlDatum中的metaData
+     *
+     * metaData默认以CompactMeta紧凑存储，在第一次设置时才创建；
+     * 调用meta()获取JsonObject后改为以该JsonObject存储，保证对它的修改有效
+     * compactMeta和metaData最多只有一个不为null
      */
-    private JsonObject metaData = new JsonObject();
+    private CompactMeta compactMeta = null;
+    private JsonObject metaData = null;
 
     public CrawlDatum() {
     }
@@ -154,6 +161,21 @@ public class CrawlDatum implements Serializable, MetaGetter, MetaSetter<CrawlDat
     public String url() {
         return url;
     }
+
+    public double score() {
+        return score;
+    }
+
+    /**
+     * 设置任务的优先级分数，会随任务持久化，DatumScorer直接使用该分数
+     *
+     * @param score 优先级分数
+     * @return 任务本身
+     */
+    public CrawlDatum score(double score) {
+        this.score = score;
+        return this;
+    }
     
     public CrawlDatum url(String url) {
         this.url = url;
@@ -188,37 +210,86 @@ public class CrawlDatum implements Serializable, MetaGetter, MetaSetter<CrawlDat
 
     @Override
     public JsonObject meta() {
+        if (metaData == null) {
+            metaData = (compactMeta == null) ? new JsonObject() : compactMeta.toJsonObject(false);
+            compactMeta = null;
+        }
         return metaData;
     }
+
     @Override
     public String meta(String key){
+        if (metaData == null) {
+            return (compactMeta == null) ? null : compactMeta.getString(key);
+        }
         JsonElement value = metaData.get(key);
         return (value==null || (value instanceof JsonNull))?null:value.getAsString();
     }
 
     @Override
     public int metaAsInt(String key){
+        if (metaData == null) {
+            return compactMeta().getInt(key);
+        }
         return metaData.get(key).getAsInt();
     }
 
     @Override
     public boolean metaAsBoolean(String key) {
+        if (metaData == null) {
+            return compactMeta().getBoolean(key);
+        }
         return metaData.get(key).getAsBoolean();
     }
 
     @Override
     public double metaAsDouble(String key) {
+        if (metaData == null) {
+            return compactMeta().getDouble(key);
+        }
         return metaData.get(key).getAsDouble();
     }
 
     @Override
     public long metaAsLong(String key) {
+        if (metaData == null) {
+            return compactMeta().getLong(key);
+        }
         return metaData.get(key).getAsLong();
     }
 
     @Override
     public JsonObject copyMeta() {
-        return meta().deepCopy();
+        if (metaData == null) {
+            return (compactMeta == null) ? new JsonObject() : compactMeta.toJsonObject(true);
+        }
+        return metaData.deepCopy();
+    }
+
+    /**
+     * @return meta中键值对的数量，不会创建JsonObject
+     */
+    public int metaSize() {
+        if (metaData != null) {
+            return metaData.size();
+        }
+        return (compactMeta == null) ? 0 : compactMeta.size();
+    }
+
+    /**
+     * 返回紧凑存储的meta，不存在时创建
+     * 如果已经通过meta()转换为JsonObject，返回null
+     *
+     * @return 紧凑存储的meta或null
+     */
+    public CompactMeta compactMeta() {
+        if (metaData != null) {
+            return null;
+        }
+        if (compactMeta == null) {
+            compactMeta = new CompactMeta();
+        }
+        return compactMeta;
     }
 
 
@@ -262,36 +333,57 @@ public class CrawlDatum implements Serializable, MetaGetter, MetaSetter<CrawlDat
     @Override
     public CrawlDatum meta(JsonObject metaData) {
         this.metaData = metaData;
+        this.compactMeta = null;
         return this;
     }
 
     @Override
     public CrawlDatum meta(String key, String value) {
-        metaData.addProperty(key, value);
+        if (metaData != null) {
+            metaData.addProperty(key, value);
+        } else {
+            compactMeta().putString(key, value);
+        }
         return this;
     }
 
     @Override
     public CrawlDatum meta(String key, int value) {
-        metaData.addProperty(key, value);
+        if (metaData != null) {
+            metaData.addProperty(key, value);
+        } else {
+            compactMeta().putLong(key, value);
+        }
         return this;
     }
 
     @Override
     public CrawlDatum meta(String key, boolean value) {
-        metaData.addProperty(key, value);
+        if (metaData != null) {
+            metaData.addProperty(key, value);
+        } else {
+            compactMeta().putBoolean(key, value);
+        }
         return this;
     }
 
     @Override
     public CrawlDatum meta(String key, double value) {
-        metaData.addProperty(key, value);
+        if (metaData != null) {
+            metaData.addProperty(key, value);
+        } else {
+            compactMeta().putDouble(key, value);
+        }
         return this;
     }
 
     @Override
     public CrawlDatum meta(String key, long value) {
-        metaData.addProperty(key, value);
+        if (metaData != null) {
+            metaData.addProperty(key, value);
+        } else {
+            compactMeta().putLong(key, value);
+        }
         return this;
     }
 
@@ -305,8 +397,8 @@ public class CrawlDatum implements Serializable, MetaGetter, MetaSetter<CrawlDat
         jsonArray.add(getExecuteCount());
         jsonArray.add(code());
         jsonArray.add(location());
-        if (meta().size() > 0) {
-            jsonArray.add(meta());
+        if (metaSize() > 0) {
+            jsonArray.add(metaData != null ? metaData : compactMeta.toJsonObject(false));
         }
 
         return jsonArray.toString();
@@ -19,38 +19,59 @@ package cn.edu.hfut.dmic.webcollector.model;
 
 import com.google.gson.JsonObject;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.function.Predicate;
 
 /**
- * 用于存储多个CrawlDatum的数据结构
+ * 用于存储多个CrawlDatum的数据结构，基于ArrayList，get(i)为O(1)
  *
  * @author hu
  */
 public class CrawlDatums implements Iterable<CrawlDatum>, MetaSetter<CrawlDatums> {
 
-    protected LinkedList<CrawlDatum> dataList = new LinkedList<CrawlDatum>();
+    protected ArrayList<CrawlDatum> dataList;
 
     public CrawlDatums() {
+        dataList = new ArrayList<CrawlDatum>();
+    }
+
+    /**
+     * @param initialCapacity 预分配的容量，已知数量时可避免扩容
+     */
+    public CrawlDatums(int initialCapacity) {
+        dataList = new ArrayList<CrawlDatum>(initialCapacity);
     }
 
     public CrawlDatums(Iterable<String> links, String type) {
+        this(initialCapacityOf(links));
         add(links, type);
     }
     
     public CrawlDatums(Iterable<String> links) {
-        add(links);
+        this(links, null);
     }
 
     public CrawlDatums(CrawlDatums datums) {
-        add(datums);
+        dataList = new ArrayList<CrawlDatum>(datums.dataList);
     }
 
     public CrawlDatums(Collection<CrawlDatum> datums) {
-        for (CrawlDatum datum : datums) {
-            this.add(datum);
+        dataList = new ArrayList<CrawlDatum>(datums);
+    }
+
+    private static int initialCapacityOf(Iterable<String> links) {
+        if (links instanceof Collection) {
+            return ((Collection) links).size();
+        } else if (links instanceof Links) {
+            return ((Links) links).size();
         }
+        return 10;
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        dataList.ensureCapacity(minCapacity);
     }
 
     public CrawlDatums add(CrawlDatum datum) {
@@ -73,18 +94,25 @@ public class CrawlDatums implements Iterable<CrawlDatum>, MetaSetter<CrawlDatums
         return this;
     }
 
+    public CrawlDatums addAll(Collection<CrawlDatum> datums) {
+        dataList.addAll(datums);
+        return this;
+    }
+
     public CrawlDatums add(Iterable<String> links, String type) {
+        dataList.ensureCapacity(dataList.size() + initialCapacityOf(links));
         for (String link : links) {
-            add(link, type);
+            CrawlDatum datum = new CrawlDatum(link);
+            if (type != null) {
+                datum.type(type);
+            }
+            dataList.add(datum);
         }
         return this;
     }
 
     public CrawlDatums add(Iterable<String> links) {
-        for (String link : links) {
-            add(link);
-        }
-        return this;
+        return add(links, null);
     }
 
     public CrawlDatum addAndReturn(String url){
@@ -189,6 +217,15 @@ public class CrawlDatums implements Iterable<CrawlDatum>, MetaSetter<CrawlDatums
         return dataList.remove(datum);
     }
 
+    /**
+     * 删除所有满足filter的CrawlDatum，只移动一次元素
+     *
+     * @return 是否删除了元素
+     */
+    public boolean removeIf(Predicate<? super CrawlDatum> filter) {
+        return dataList.removeIf(filter);
+    }
+
     public void clear() {
         dataList.clear();
     }
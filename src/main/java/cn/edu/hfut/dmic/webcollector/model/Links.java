@@ -17,34 +17,49 @@
  */
 package cn.edu.hfut.dmic.webcollector.model;
 
+import cn.edu.hfut.dmic.webcollector.util.LinkExtractor;
 import cn.edu.hfut.dmic.webcollector.util.RegexRule;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Predicate;
 
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 /**
- * 用于存储多个URL的数据结构，继承于ArrayList
+ * 用于存储多个URL的数据结构，基于ArrayList
  *
  * @author hu
  */
 public class Links implements Iterable<String> {
 
-    protected LinkedList<String> dataList = new LinkedList<String>();
+    protected ArrayList<String> dataList;
 
     public Links() {
+        dataList = new ArrayList<String>();
+    }
 
+    /**
+     * @param initialCapacity 预分配的容量，已知数量时可避免扩容
+     */
+    public Links(int initialCapacity) {
+        dataList = new ArrayList<String>(initialCapacity);
     }
 
     public Links(Iterable<String> links) {
+        this();
         add(links);
     }
 
     public Links(Collection<String> urls) {
-        add(urls);
+        dataList = new ArrayList<String>(urls);
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        dataList.ensureCapacity(minCapacity);
     }
 
     public CrawlDatums toCrawlDatums(){
@@ -57,6 +72,10 @@ public class Links implements Iterable<String> {
     }
 
     public Links add(Iterable<String> links) {
+        if (links instanceof Links) {
+            dataList.addAll(((Links) links).dataList);
+            return this;
+        }
         for (String url : links) {
             dataList.add(url);
         }
@@ -73,17 +92,40 @@ public class Links implements Iterable<String> {
         return dataList.iterator();
     }
 
+    /**
+     * 原地压缩，保留满足regexRule的链接，不逐个删除元素
+     */
     public Links filterByRegex(RegexRule regexRule) {
-        Iterator<String> ite = iterator();
-        while(ite.hasNext()){
-            String url = ite.next();
-            if (!regexRule.satisfy(url)) {
-                ite.remove();
+        int size = dataList.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            String url = dataList.get(i);
+            if (regexRule.satisfy(url)) {
+                if (kept != i) {
+                    dataList.set(kept, url);
+                }
+                kept++;
             }
         }
+        truncate(kept);
         return this;
     }
 
+    private void truncate(int newSize) {
+        if (newSize < dataList.size()) {
+            dataList.subList(newSize, dataList.size()).clear();
+        }
+    }
+
+    /**
+     * 删除所有满足filter的链接
+     *
+     * @return 是否删除了元素
+     */
+    public boolean removeIf(Predicate<? super String> filter) {
+        return dataList.removeIf(filter);
+    }
+
     public Links filterByRegex(String regex) {
         RegexRule regexRule = new RegexRule();
         regexRule.addRule(regex);
@@ -96,9 +138,14 @@ public class Links implements Iterable<String> {
     }
 
     public Links addFromElement(Element ele, boolean parseImg) {
-        add(ele.select("a[href]").eachAttr("abs:href"));
+        List<String> hrefs = ele.select("a[href]").eachAttr("abs:href");
         if(parseImg){
-            add(ele.select("img[src]").eachAttr("abs:src"));
+            List<String> srcs = ele.select("img[src]").eachAttr("abs:src");
+            dataList.ensureCapacity(dataList.size() + hrefs.size() + srcs.size());
+            dataList.addAll(hrefs);
+            dataList.addAll(srcs);
+        }else{
+            dataList.addAll(hrefs);
         }
         return this;
     }
@@ -147,6 +194,30 @@ public class Links implements Iterable<String> {
         return this;
     }
 
+    /**
+     * 不构建DOM树，流式扫描html抽取满足regexRule的链接，结果与addByRegex(Element, ...)一致
+     */
+    public Links addByRegex(String html, String baseUri, RegexRule regexRule, boolean parseSrc) {
+        ArrayList<String> hrefs = new ArrayList<String>();
+        ArrayList<String> srcs = parseSrc ? new ArrayList<String>() : null;
+        LinkExtractor.extract(html, baseUri, hrefs, srcs);
+        for (int i = 0; i < hrefs.size(); i++) {
+            String href = hrefs.get(i);
+            if (regexRule.satisfy(href)) {
+                dataList.add(href);
+            }
+        }
+        if (parseSrc) {
+            for (int i = 0; i < srcs.size(); i++) {
+                String src = srcs.get(i);
+                if (regexRule.satisfy(src)) {
+                    dataList.add(src);
+                }
+            }
+        }
+        return this;
+    }
+
     public Links addByRegex(Element ele, RegexRule regexRule) {
         return addByRegex(ele, regexRule, false);
     }
@@ -17,6 +17,8 @@
  */
 package cn.edu.hfut.dmic.webcollector.model;
 
+import cn.edu.hfut.dmic.contentextractor.ContentExtractor;
+import cn.edu.hfut.dmic.contentextractor.News;
 import cn.edu.hfut.dmic.webcollector.util.CharsetDetector;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
@@ -54,6 +56,7 @@ public class Page implements MetaGetter, MetaSetter<Page>{
 
     private String html = null;
     private Document doc = null;
+    private News news = null;
 
     private String charset = null;
     private byte[] content = null;
@@ -188,11 +191,21 @@ public class Page implements MetaGetter, MetaSetter<Page>{
 
 
 
+    /**
+     * 抽取满足regexRule的链接
+     * 已经解析过DOM树(调用过doc())时使用DOM树，否则流式扫描源码，不构建DOM树
+     */
     public Links regexLinks(RegexRule regexRule, boolean parseSrc) {
+        if (doc == null) {
+            String html = html();
+            if (html != null) {
+                return new Links().addByRegex(html, url(), regexRule, parseSrc);
+            }
+        }
         return new Links().addByRegex(doc(), regexRule, parseSrc);
     }
     public Links regexLinks(String regex, boolean parseSrc){
-        return new Links().addByRegex(doc(),regex,parseSrc);
+        return regexLinks(new RegexRule(regex), parseSrc);
     }
 
     public Links regexLinks(RegexRule regexRule) {
@@ -369,7 +382,7 @@ public class Page implements MetaGetter, MetaSetter<Page>{
             return null;
         }
         if (charset == null) {
-            charset = CharsetDetector.guessEncoding(content());
+            charset = CharsetDetector.guessEncoding(content(), contentType);
         }
         try {
             html = new String(content, charset);
@@ -424,6 +437,27 @@ public class Page implements MetaGetter, MetaSetter<Page>{
         this.doc = doc;
     }
 
+    /**
+     * @return 是否已经解析过DOM树
+     */
+    public boolean hasDoc() {
+        return doc != null;
+    }
+
+    /**
+     * 使用ContentExtractor抽取新闻信息，结果缓存在Page中
+     * 抽取不修改doc()返回的DOM树，抽取后doc()仍可用于选择器和链接解析，不会重复解析HTML
+     *
+     * @return 抽取的新闻信息
+     * @throws Exception 抽取失败
+     */
+    public News news() throws Exception {
+        if (news == null) {
+            news = ContentExtractor.getNewsByDoc(doc(), false);
+        }
+        return news;
+    }
+
 
 
     public Exception getException() {
@@ -492,7 +526,7 @@ public class Page implements MetaGetter, MetaSetter<Page>{
 
     public String charset() {
         if (charset == null) {
-            charset = CharsetDetector.guessEncoding(content());
+            charset = CharsetDetector.guessEncoding(content(), contentType);
         }
         return charset;
     }
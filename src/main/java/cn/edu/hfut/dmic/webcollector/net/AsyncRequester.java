@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2015 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.net;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import cn.edu.hfut.dmic.webcollector.model.Page;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 支持异步请求的Requester，调用方不需要为每个请求占用一个线程
+ *
+ * @author hu
+ */
+public interface AsyncRequester extends Requester {
+
+    /**
+     * 发起异步请求，请求失败时返回的CompletableFuture以异常结束
+     *
+     * @param datum 爬取任务
+     * @return 请求完成时得到Page
+     */
+    CompletableFuture<Page> getResponseAsync(CrawlDatum datum);
+}
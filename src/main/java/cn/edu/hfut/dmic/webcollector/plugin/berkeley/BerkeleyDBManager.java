@@ -87,11 +87,23 @@ public class BerkeleyDBManager extends DBManager {
                 return;
             }
         }
-        value = BerkeleyDBUtils.strToEntry(datum.asJsonArray().toString());
+        value = BerkeleyDBUtils.datumToEntry(datum);
         database.put(null, key, value);
         database.close();
     }
 
+    @Override
+    public boolean injectIfAbsent(CrawlDatum datum) throws Exception {
+        Database database = env.openDatabase(null, "crawldb", BerkeleyDBUtils.defaultDBConfig);
+        try {
+            DatabaseEntry key = BerkeleyDBUtils.strToEntry(datum.key());
+            DatabaseEntry value = BerkeleyDBUtils.datumToEntry(datum);
+            return database.putNoOverwrite(null, key, value) == OperationStatus.SUCCESS;
+        } finally {
+            database.close();
+        }
+    }
+
     @Override
     public void inject(CrawlDatums datums, boolean force) throws Exception {
         Database database = env.openDatabase(null, "crawldb", BerkeleyDBUtils.defaultDBConfig);
@@ -104,7 +116,7 @@ public class BerkeleyDBManager extends DBManager {
                     continue;
                 }
             }
-            value = BerkeleyDBUtils.strToEntry(datum.asJsonArray().toString());
+            value = BerkeleyDBUtils.datumToEntry(datum);
             database.put(null, key, value);
         }
         database.close();
@@ -128,8 +140,9 @@ public class BerkeleyDBManager extends DBManager {
     }
 
     public int BUFFER_SIZE = 1;
-    Database fetchDatabase = null;
-    Database linkDatabase = null;
+    // 停止时可能仍有未结束的任务写入segment，关闭后的写入抛出IllegalStateException
+    volatile Database fetchDatabase = null;
+    volatile Database linkDatabase = null;
 
     AtomicInteger count_fetch = new AtomicInteger(0);
     AtomicInteger count_link = new AtomicInteger(0);
@@ -145,14 +158,22 @@ public class BerkeleyDBManager extends DBManager {
 
     @Override
     public void writeFetchSegment(CrawlDatum fetchDatum) throws Exception {
-        BerkeleyDBUtils.writeDatum(fetchDatabase, fetchDatum);
+        Database database = fetchDatabase;
+        if (database == null) {
+            throw new IllegalStateException("fetch segment writer is closed");
+        }
+        BerkeleyDBUtils.writeDatum(database, fetchDatum);
     }
 
 
     @Override
     public void writeParseSegment(CrawlDatums parseDatums) throws Exception {
+        Database database = linkDatabase;
+        if (database == null) {
+            throw new IllegalStateException("link segment writer is closed");
+        }
         for (CrawlDatum datum : parseDatums) {
-            BerkeleyDBUtils.writeDatum(linkDatabase, datum);
+            BerkeleyDBUtils.writeDatum(database, datum);
         }
     }
 
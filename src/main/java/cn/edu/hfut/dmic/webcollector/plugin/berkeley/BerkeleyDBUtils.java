@@ -19,8 +19,7 @@
 package cn.edu.hfut.dmic.webcollector.plugin.berkeley;
 
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
-import cn.edu.hfut.dmic.webcollector.util.GsonUtils;
-import com.google.gson.JsonArray;
+import cn.edu.hfut.dmic.webcollector.util.CrawlDatumCodec;
 import com.sleepycat.je.Database;
 import com.sleepycat.je.DatabaseConfig;
 import com.sleepycat.je.DatabaseEntry;
@@ -44,9 +43,7 @@ public class BerkeleyDBUtils {
     }
     
     public static void writeDatum(Database database,CrawlDatum datum) throws Exception{
-        String key = datum.key();
-        String value= datum.asJsonArray().toString();
-        put(database,key,value);
+        database.put(null, strToEntry(datum.key()), datumToEntry(datum));
     }
     
     public static void put(Database database,String key,String value) throws Exception{
@@ -56,11 +53,13 @@ public class BerkeleyDBUtils {
     public static DatabaseEntry strToEntry(String str) throws UnsupportedEncodingException{
         return new DatabaseEntry(str.getBytes("utf-8"));
     }
+
+    public static DatabaseEntry datumToEntry(CrawlDatum datum){
+        return new DatabaseEntry(CrawlDatumCodec.encode(datum));
+    }
     
      public static CrawlDatum createCrawlDatum(DatabaseEntry key,DatabaseEntry value) throws Exception{
         String datumKey=new String(key.getData(),"utf-8");
-        String valueStr=new String(value.getData(),"utf-8");
-        JsonArray datumJsonArray = GsonUtils.parse(valueStr).getAsJsonArray();
-        return CrawlDatum.fromJsonArray(datumKey, datumJsonArray);
+        return CrawlDatumCodec.decode(datumKey, value.getData());
     }
 }
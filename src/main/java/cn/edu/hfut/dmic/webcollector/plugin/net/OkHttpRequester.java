@@ -17,24 +17,40 @@
  */
 package cn.edu.hfut.dmic.webcollector.plugin.net;
 
+import cn.edu.hfut.dmic.webcollector.conf.Configuration;
 import cn.edu.hfut.dmic.webcollector.conf.DefaultConfigured;
+import cn.edu.hfut.dmic.webcollector.fetcher.Cancelable;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import cn.edu.hfut.dmic.webcollector.model.Page;
-import cn.edu.hfut.dmic.webcollector.net.Requester;
+import cn.edu.hfut.dmic.webcollector.net.AsyncRequester;
+import cn.edu.hfut.dmic.webcollector.util.BufferPool;
 import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * @author hu
  */
-public class OkHttpRequester extends DefaultConfigured implements Requester{
+public class OkHttpRequester extends DefaultConfigured implements AsyncRequester, Cancelable{
+
+    public static final Logger LOG = LoggerFactory.getLogger(OkHttpRequester.class);
 
     protected OkHttpClient client;
     protected HashSet<Integer> successCodeSet;
+    // 进行中的请求，用于cancelAll
+    protected final Set<Call> runningCalls = ConcurrentHashMap.newKeySet();
 
     public OkHttpRequester addSuccessCode(int successCode){
         successCodeSet.add(successCode);
@@ -59,12 +75,40 @@ public class OkHttpRequester extends DefaultConfigured implements Requester{
         OkHttpClient.Builder builder = new OkHttpClient.Builder()
                 .followRedirects(false)
                 .followSslRedirects(false)
+                .dispatcher(createDispatcher())
                 .connectTimeout(getConf().getConnectTimeout(), TimeUnit.MILLISECONDS)
                 .readTimeout(getConf().getReadTimeout(), TimeUnit.MILLISECONDS);
         return builder;
 
     }
 
+    /**
+     * 异步请求(enqueue)由Dispatcher调度
+     * OkHttp使用阻塞IO，每个进行中的异步请求在连接、等待响应和读取响应体期间都占用Dispatcher的一个平台线程，
+     * 因此线程池大小即为Configuration.KEY_MAX_IN_FLIGHT，空闲线程60秒后回收；
+     * 每个host的并发数为Configuration.KEY_HOST_MAX_CONCURRENCY，未设置时使用OkHttp默认的5
+     */
+    public Dispatcher createDispatcher(){
+        int maxInFlight = getConf().getMaxInFlight();
+        ThreadPoolExecutor executorService = new ThreadPoolExecutor(maxInFlight, maxInFlight,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "OkHttp Dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executorService.allowCoreThreadTimeOut(true);
+        Dispatcher dispatcher = new Dispatcher(executorService);
+        dispatcher.setMaxRequests(maxInFlight);
+        Integer hostMaxConcurrency = getConf().getHostMaxConcurrency();
+        if (hostMaxConcurrency != null && hostMaxConcurrency > 0) {
+            dispatcher.setMaxRequestsPerHost(hostMaxConcurrency);
+        }
+        return dispatcher;
+    }
+
     public Request.Builder createRequestBuilder(CrawlDatum crawlDatum){
         Request.Builder builder = new Request.Builder()
                 .header("User-Agent",getConf().getDefaultUserAgent())
@@ -83,6 +127,18 @@ public class OkHttpRequester extends DefaultConfigured implements Requester{
         client = createOkHttpClientBuilder().build();
     }
 
+    /**
+     * 重建client，使Crawler中设置的超时、KEY_MAX_IN_FLIGHT等配置生效
+     */
+    @Override
+    public void setConf(Configuration conf) {
+        super.setConf(conf);
+        // 父类构造函数中调用时client还未创建
+        if (client != null) {
+            client = createOkHttpClientBuilder().build();
+        }
+    }
+
     @Override
     public Page getResponse(String url) throws Exception {
         return getResponse(new CrawlDatum(url));
@@ -91,8 +147,63 @@ public class OkHttpRequester extends DefaultConfigured implements Requester{
     @Override
     public Page getResponse(CrawlDatum datum) throws Exception {
         Request  request = createRequestBuilder(datum).build();
-        Response response = client.newCall(request).execute();
+        Call call = client.newCall(request);
+        runningCalls.add(call);
+        try {
+            Response response = call.execute();
+            return createPage(datum, response);
+        } finally {
+            runningCalls.remove(call);
+        }
+    }
 
+    @Override
+    public CompletableFuture<Page> getResponseAsync(final CrawlDatum datum) {
+        final CompletableFuture<Page> future = new CompletableFuture<Page>();
+        Request request;
+        try {
+            request = createRequestBuilder(datum).build();
+        } catch (Exception ex) {
+            future.completeExceptionally(ex);
+            return future;
+        }
+        Call call = client.newCall(request);
+        runningCalls.add(call);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                runningCalls.remove(call);
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    future.complete(createPage(datum, response));
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                } finally {
+                    runningCalls.remove(call);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 取消所有进行中的同步和异步请求，正在连接或读取响应体的请求以IOException结束
+     */
+    @Override
+    public void cancelAll() {
+        for (Call call : runningCalls) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * 读取响应并构造Page，同步和异步请求共用
+     */
+    protected Page createPage(CrawlDatum datum, Response response) throws Exception {
         String contentType = null;
         byte[] content = null;
         String charset = null;
@@ -111,7 +222,6 @@ public class OkHttpRequester extends DefaultConfigured implements Requester{
 
             }
             if (responseBody != null) {
-                content = responseBody.bytes();
                 MediaType mediaType = responseBody.contentType();
                 if (mediaType != null) {
                     contentType = mediaType.toString();
@@ -120,6 +230,9 @@ public class OkHttpRequester extends DefaultConfigured implements Requester{
                         charset = responseCharset.name();
                     }
                 }
+                if (beforeReadBody(datum, response, mediaType, responseBody.contentLength())) {
+                    content = readBody(datum, responseBody);
+                }
             }
 
             Page page = new Page(
@@ -137,6 +250,35 @@ public class OkHttpRequester extends DefaultConfigured implements Requester{
         }
     }
 
+    /**
+     * 读取响应体之前调用，可以根据Content-Type和Content-Length放弃读取，
+     * 返回false时不读取响应体，Page的content为null
+     *
+     * @param contentLength 响应头中的长度，未知时为-1
+     * @return 是否读取响应体
+     */
+    protected boolean beforeReadBody(CrawlDatum datum, Response response, MediaType mediaType, long contentLength) {
+        return true;
+    }
+
+    /**
+     * 流式读取响应体，超过Configuration.KEY_MAX_RECEIVE_SIZE的部分被截断，
+     * 剩余数据不再读取，连接在关闭响应体时断开
+     */
+    protected byte[] readBody(CrawlDatum datum, ResponseBody responseBody) throws IOException {
+        Integer maxReceiveSize = getConf().getMaxReceiveSize();
+        int maxSize = (maxReceiveSize == null) ? 0 : maxReceiveSize;
+        long contentLength = responseBody.contentLength();
+        InputStream is = responseBody.byteStream();
+        byte[] content = BufferPool.readFully(is, contentLength, maxSize);
+        // 长度未知时读到maxSize后再读一个字节，确认确实还有剩余数据
+        if (maxSize > 0 && content.length == maxSize
+                && (contentLength > maxSize || (contentLength < 0 && is.read() != -1))) {
+            LOG.info("response body truncated to " + maxSize + " bytes: " + datum.url());
+        }
+        return content;
+    }
+
     public HashSet<Integer> getSuccessCodeSet() {
         return successCodeSet;
     }
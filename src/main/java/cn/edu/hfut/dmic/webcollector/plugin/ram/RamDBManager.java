@@ -68,6 +68,16 @@ public class RamDBManager extends DBManager {
     public void close() throws Exception {
     }
 
+    @Override
+    public synchronized boolean injectIfAbsent(CrawlDatum datum) throws Exception {
+        String key = datum.key();
+        if (ramDB.crawlDB.containsKey(key)) {
+            return false;
+        }
+        ramDB.crawlDB.put(key, datum);
+        return true;
+    }
+
     @Override
     public void inject(CrawlDatum datum, boolean force) throws Exception {
         String key = datum.key();
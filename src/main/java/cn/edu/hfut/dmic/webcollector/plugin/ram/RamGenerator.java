@@ -20,8 +20,8 @@ package cn.edu.hfut.dmic.webcollector.plugin.ram;
 import cn.edu.hfut.dmic.webcollector.crawldb.Generator;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import cn.edu.hfut.dmic.webcollector.util.Config;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map.Entry;
 
 /**
  *
@@ -33,15 +33,16 @@ public class RamGenerator extends Generator {
 
     public RamGenerator(RamDB ramDB) {
         this.ramDB = ramDB;
-        iterator = ramDB.crawlDB.entrySet().iterator();
+        // 遍历crawldb的快照，持续爬取模式下生成期间会有新任务写入crawldb
+        iterator = new ArrayList<CrawlDatum>(ramDB.crawlDB.values()).iterator();
     }
 
-    Iterator<Entry<String, CrawlDatum>> iterator;
+    Iterator<CrawlDatum> iterator;
 
     @Override
     public CrawlDatum nextWithoutFilter() throws Exception {
         if(iterator.hasNext()){
-            CrawlDatum datum = iterator.next().getValue();
+            CrawlDatum datum = iterator.next();
             return datum;
         }else{
             return null;
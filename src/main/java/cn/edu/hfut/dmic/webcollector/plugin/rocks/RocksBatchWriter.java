@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.plugin.rocks;
+
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import cn.edu.hfut.dmic.webcollector.util.CrawlDatumCodec;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+/**
+ * 带缓冲的RocksDB写入器，多个线程共享
+ * 写入先累积到WriteBatch中，记录数达到batchSize或距上次写入超过flushInterval时一次性写入，
+ * close时保证剩余数据全部写入，close之后的写入抛出IllegalStateException，
+ * 避免写入已释放的WriteBatch或已删除的column family
+ *
+ * @author hu
+ */
+public class RocksBatchWriter {
+
+    protected RocksDB rocksDB;
+    protected ColumnFamilyHandle handle;
+    protected WriteOptions writeOptions;
+    protected WriteBatch batch = new WriteBatch();
+    protected int batchSize;
+    protected long flushInterval;
+    protected boolean disableWAL;
+
+    protected int batchCount = 0;
+    protected long totalCount = 0;
+    protected long lastFlushTime = System.currentTimeMillis();
+    protected boolean closed = false;
+
+    /**
+     * @param rocksDB 写入的数据库
+     * @param handle 写入的column family
+     * @param batchSize 缓冲的最大记录数，小于等于1时不缓冲
+     * @param flushInterval 缓冲的最长时间(毫秒)
+     * @param disableWAL 是否关闭WAL，只适用于可以重建的临时库
+     */
+    public RocksBatchWriter(RocksDB rocksDB, ColumnFamilyHandle handle, int batchSize, long flushInterval, boolean disableWAL) {
+        this.rocksDB = rocksDB;
+        this.handle = handle;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.disableWAL = disableWAL;
+        this.writeOptions = new WriteOptions().setDisableWAL(disableWAL);
+    }
+
+    public synchronized void put(byte[] key, byte[] value) throws RocksDBException {
+        put(handle, key, value);
+    }
+
+    /**
+     * 写入指定的column family，与其他写入在同一个WriteBatch中原子地提交
+     */
+    public synchronized void put(ColumnFamilyHandle handle, byte[] key, byte[] value) throws RocksDBException {
+        ensureOpen();
+        batch.put(handle, key, value);
+        afterWrite();
+    }
+
+    public synchronized void delete(ColumnFamilyHandle handle, byte[] key) throws RocksDBException {
+        ensureOpen();
+        batch.delete(handle, key);
+        afterWrite();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("RocksBatchWriter is closed");
+        }
+    }
+
+    private void afterWrite() throws RocksDBException {
+        batchCount++;
+        totalCount++;
+        if (batchCount >= batchSize || System.currentTimeMillis() - lastFlushTime >= flushInterval) {
+            flush();
+        }
+    }
+
+    public void writeDatum(CrawlDatum datum) throws Exception {
+        put(RocksDBUtils.strToKeyOrValue(datum.key()), CrawlDatumCodec.encode(datum));
+    }
+
+    /**
+     * 批量写入，整批只加锁一次
+     */
+    public synchronized void writeDatums(Iterable<CrawlDatum> datums) throws Exception {
+        ensureOpen();
+        for (CrawlDatum datum : datums) {
+            batch.put(handle, RocksDBUtils.strToKeyOrValue(datum.key()), CrawlDatumCodec.encode(datum));
+            batchCount++;
+            totalCount++;
+        }
+        if (batchCount >= batchSize || System.currentTimeMillis() - lastFlushTime >= flushInterval) {
+            flush();
+        }
+    }
+
+    /**
+     * 将缓冲的数据写入数据库
+     */
+    public synchronized void flush() throws RocksDBException {
+        ensureOpen();
+        if (batchCount > 0) {
+            rocksDB.write(writeOptions, batch);
+            batch.clear();
+            batchCount = 0;
+        }
+        lastFlushTime = System.currentTimeMillis();
+    }
+
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * 写入剩余数据并释放资源，不关闭数据库和column family
+     * 关闭WAL时将memtable刷到磁盘，保证数据库关闭后数据完整
+     */
+    public synchronized void close() throws RocksDBException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            if (disableWAL) {
+                FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true);
+                try {
+                    rocksDB.flush(flushOptions, handle);
+                } finally {
+                    flushOptions.close();
+                }
+            }
+        } finally {
+            closed = true;
+            batch.close();
+            writeOptions.close();
+        }
+    }
+}
@@ -17,23 +17,44 @@
  */
 package cn.edu.hfut.dmic.webcollector.plugin.rocks;
 
+import cn.edu.hfut.dmic.webcollector.conf.Configuration;
 import cn.edu.hfut.dmic.webcollector.crawldb.DBManager;
 import cn.edu.hfut.dmic.webcollector.crawldb.Generator;
+import cn.edu.hfut.dmic.webcollector.crawldb.GeneratorFilter;
+import cn.edu.hfut.dmic.webcollector.crawldb.StatusGeneratorFilter;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
 
+import cn.edu.hfut.dmic.webcollector.util.ConfigurationUtils;
+import cn.edu.hfut.dmic.webcollector.util.CrawlDatumCodec;
 import cn.edu.hfut.dmic.webcollector.util.CrawlDatumFormater;
 import cn.edu.hfut.dmic.webcollector.util.FileUtils;
-import org.apache.commons.io.FilenameUtils;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
+ * 基于RocksDB的DBManager
+ * 整个爬取过程只打开一个RocksDB实例(crawlPath/crawldb)，open()时打开，close()时关闭，
+ * crawldb使用默认column family(兼容旧版本的数据)，fetch和link使用单独的column family，
+ * 每层合并后通过删除并重建column family清空，
+ * frontier column family保存crawldb中未成功执行的任务，与crawldb在同一个WriteBatch中更新，
+ * 使用StatusGeneratorFilter时只需要遍历frontier
  *
  * @author hu
  */
@@ -43,60 +64,134 @@ public class RocksDBManager extends DBManager {
         RocksDB.loadLibrary();
     }
 
-
-
     Logger LOG = LoggerFactory.getLogger(RocksDBManager.class);
 
     String crawlPath;
-    RocksGenerator generator = null;
+
+    RocksDB rocksDB = null;
+    RocksDBOptions rocksDBOptions = null;
+    ColumnFamilyOptions crawldbOptions = null;
+    ColumnFamilyOptions segmentOptions = null;
+    List<ColumnFamilyHandle> columnFamilyHandles = null;
+    ColumnFamilyHandle crawldbHandle = null;
+    ColumnFamilyHandle fetchHandle = null;
+    ColumnFamilyHandle linkHandle = null;
+    ColumnFamilyHandle frontierHandle = null;
+    WriteOptions crawldbWriteOptions = null;
 
     public RocksDBManager(String crawlPath) {
         this.crawlPath = crawlPath;
     }
 
-    public void list() throws Exception {
-        String crawldbPath = FilenameUtils.concat(crawlPath, "crawldb");
-        RocksDB crawldbDatabase = RocksDBUtils.open(crawldbPath);
-        RocksIterator crawldbIterator = crawldbDatabase.newIterator();
+    public RocksDB getRocksDB() {
+        return rocksDB;
+    }
 
-        for(crawldbIterator.seekToFirst(); crawldbIterator.isValid(); crawldbIterator.next()){
-            CrawlDatum datum = RocksDBUtils.createCrawlDatum(crawldbIterator.key(), crawldbIterator.value());
-            System.out.println(CrawlDatumFormater.datumToString(datum));
-        }
+    /**
+     * 直接写入crawldb时需要同时更新frontier，见putCrawldb
+     */
+    public ColumnFamilyHandle getCrawldbHandle() {
+        return crawldbHandle;
+    }
 
-        crawldbDatabase.close();
+    public ColumnFamilyHandle getFrontierHandle() {
+        return frontierHandle;
+    }
 
+    /**
+     * 输出crawldb中的所有任务，数据库未打开时临时打开，结束后关闭
+     */
+    public void list() throws Exception {
+        boolean opened = false;
+        if (rocksDB == null) {
+            open();
+            opened = true;
+        }
+        try {
+            RocksIterator crawldbIterator = rocksDB.newIterator(crawldbHandle);
+            try {
+                for (crawldbIterator.seekToFirst(); crawldbIterator.isValid(); crawldbIterator.next()) {
+                    CrawlDatum datum = RocksDBUtils.createCrawlDatum(crawldbIterator.key(), crawldbIterator.value());
+                    System.out.println(CrawlDatumFormater.datumToString(datum));
+                }
+            } finally {
+                crawldbIterator.close();
+            }
+        } finally {
+            if (opened) {
+                close();
+            }
+        }
     }
 
     @Override
     public void inject(CrawlDatum datum, boolean force) throws Exception {
-        RocksDB crawldbDatabase = RocksDBUtils.openCrawldbDatabase(crawlPath);
-        String key = datum.key();
+        byte[] key = RocksDBUtils.strToKeyOrValue(datum.key());
         if (!force) {
-            if(RocksDBUtils.get(crawldbDatabase, key) != null){
-                crawldbDatabase.close();
+            if (rocksDB.get(crawldbHandle, key) != null) {
                 return;
             }
         }
-        RocksDBUtils.put(crawldbDatabase, key, datum.asJsonArray().toString());
-        crawldbDatabase.close();
+        putCrawldb(key, datum);
+    }
+
+    /**
+     * 写入crawldb，并在同一个WriteBatch中按状态写入或删除frontier中的记录
+     *
+     * @param key crawldb中的key
+     * @param datum 任务
+     * @throws Exception 异常
+     */
+    public void putCrawldb(byte[] key, CrawlDatum datum) throws Exception {
+        byte[] value = CrawlDatumCodec.encode(datum);
+        WriteBatch batch = new WriteBatch();
+        try {
+            batch.put(crawldbHandle, key, value);
+            if (datum.getStatus() == CrawlDatum.STATUS_DB_SUCCESS) {
+                batch.delete(frontierHandle, key);
+            } else {
+                batch.put(frontierHandle, key, value);
+            }
+            rocksDB.write(crawldbWriteOptions, batch);
+        } finally {
+            batch.close();
+        }
+    }
+
+    /**
+     * 通过RocksBatchWriter写入crawldb和frontier，用于合并和重建
+     */
+    private void putCrawldb(RocksBatchWriter writer, byte[] key, byte[] value) throws RocksDBException {
+        writer.put(crawldbHandle, key, value);
+        putFrontier(writer, key, value);
+    }
+
+    private void putFrontier(RocksBatchWriter writer, byte[] key, byte[] value) throws RocksDBException {
+        if (CrawlDatumCodec.decodeStatus(value) == CrawlDatum.STATUS_DB_SUCCESS) {
+            writer.delete(frontierHandle, key);
+        } else {
+            writer.put(frontierHandle, key, value);
+        }
     }
 
+    /**
+     * 先通过布隆过滤器和块缓存判断key是否存在，不存在时写入crawldb
+     */
     @Override
-    public void inject(CrawlDatums datums, boolean force) throws Exception {
-        RocksDB crawldbDatabase = RocksDBUtils.openCrawldbDatabase(crawlPath);
+    public boolean injectIfAbsent(CrawlDatum datum) throws Exception {
+        byte[] key = RocksDBUtils.strToKeyOrValue(datum.key());
+        if (rocksDB.get(crawldbHandle, key) != null) {
+            return false;
+        }
+        putCrawldb(key, datum);
+        return true;
+    }
 
+    @Override
+    public void inject(CrawlDatums datums, boolean force) throws Exception {
         for (int i = 0; i < datums.size(); i++) {
-            CrawlDatum datum = datums.get(i);
-            String key = datum.key();
-            if (!force) {
-                if(RocksDBUtils.get(crawldbDatabase, key) != null){
-                    continue;
-                }
-            }
-            RocksDBUtils.put(crawldbDatabase, key, datum.asJsonArray().toString());
+            inject(datums.get(i), force);
         }
-        crawldbDatabase.close();
     }
 
     @Override
@@ -105,97 +200,317 @@ public class RocksDBManager extends DBManager {
         if (!dir.exists()) {
             dir.mkdirs();
         }
+        String crawldbPath = RocksDBUtils.getCrawldbPath(crawlPath);
+
+        rocksDBOptions = createRocksDBOptions();
+        DBOptions dbOptions = rocksDBOptions.createDBOptions();
+        crawldbOptions = rocksDBOptions.createCrawldbOptions();
+        segmentOptions = rocksDBOptions.createSegmentOptions();
+
+        // RocksDB要求打开已存在的所有column family
+        List<byte[]> columnFamilyNames = new ArrayList<byte[]>();
+        columnFamilyNames.add(RocksDB.DEFAULT_COLUMN_FAMILY);
+        columnFamilyNames.add(RocksDBUtils.strToKeyOrValue(RocksDBUtils.FETCH_COLUMN_FAMILY));
+        columnFamilyNames.add(RocksDBUtils.strToKeyOrValue(RocksDBUtils.LINK_COLUMN_FAMILY));
+        byte[] frontierName = RocksDBUtils.strToKeyOrValue(RocksDBUtils.FRONTIER_COLUMN_FAMILY);
+        columnFamilyNames.add(frontierName);
+        File frontierRebuildFile = new File(RocksDBUtils.getFrontierRebuildPath(crawlPath));
+        if (new File(crawldbPath).exists()) {
+            Options listOptions = new Options();
+            try {
+                List<byte[]> existingNames = RocksDB.listColumnFamilies(listOptions, crawldbPath);
+                // 旧版本的crawldb没有frontier，打开后根据crawldb重建
+                if (!containsName(existingNames, frontierName)) {
+                    createFile(frontierRebuildFile);
+                }
+                for (byte[] existingName : existingNames) {
+                    if (!containsName(columnFamilyNames, existingName)) {
+                        columnFamilyNames.add(existingName);
+                    }
+                }
+            } finally {
+                listOptions.close();
+            }
+        }
+
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<ColumnFamilyDescriptor>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, crawldbOptions));
+        for (int i = 1; i < columnFamilyNames.size(); i++) {
+            byte[] name = columnFamilyNames.get(i);
+            ColumnFamilyOptions options = Arrays.equals(name, frontierName) ? crawldbOptions : segmentOptions;
+            descriptors.add(new ColumnFamilyDescriptor(name, options));
+        }
+        columnFamilyHandles = new ArrayList<ColumnFamilyHandle>();
+        rocksDB = RocksDB.open(dbOptions, crawldbPath, descriptors, columnFamilyHandles);
+        crawldbHandle = columnFamilyHandles.get(0);
+        fetchHandle = columnFamilyHandles.get(1);
+        linkHandle = columnFamilyHandles.get(2);
+        frontierHandle = columnFamilyHandles.get(3);
+        crawldbWriteOptions = new WriteOptions();
+
+        importLegacySegment(RocksDBUtils.getFetchPath(crawlPath), fetchHandle);
+        importLegacySegment(RocksDBUtils.getLinkPath(crawlPath), linkHandle);
+
+        if (frontierRebuildFile.exists()) {
+            rebuildFrontier();
+            if (!frontierRebuildFile.delete()) {
+                throw new IOException("failed to delete " + frontierRebuildFile);
+            }
+        }
     }
 
-    @Override
-    public void close() throws Exception {
+    private static void createFile(File file) throws IOException {
+        if (!file.exists() && !file.createNewFile()) {
+            throw new IOException("failed to create " + file);
+        }
     }
 
-    public int BUFFER_SIZE = 1;
-    RocksDB fetchDatabase = null;
-    RocksDB linkDatabase = null;
+    /**
+     * 清空frontier后遍历crawldb，写入所有未成功执行的任务
+     * 重建期间中断时标记文件仍然存在，下次打开时重新重建
+     */
+    protected void rebuildFrontier() throws RocksDBException {
+        LOG.info("rebuild frontier from crawldb");
+        frontierHandle = resetColumnFamily(frontierHandle, crawldbOptions);
+        RocksBatchWriter frontierWriter = createMergeWriter();
+        RocksIterator crawldbIterator = rocksDB.newIterator(crawldbHandle);
+        try {
+            for (crawldbIterator.seekToFirst(); crawldbIterator.isValid(); crawldbIterator.next()) {
+                byte[] value = crawldbIterator.value();
+                if (CrawlDatumCodec.decodeStatus(value) != CrawlDatum.STATUS_DB_SUCCESS) {
+                    frontierWriter.put(frontierHandle, crawldbIterator.key(), value);
+                }
+            }
+        } finally {
+            crawldbIterator.close();
+            frontierWriter.close();
+        }
+        LOG.info("rebuild frontier: " + frontierWriter.getTotalCount() + " records");
+    }
 
-    AtomicInteger count_fetch = new AtomicInteger(0);
-    AtomicInteger count_link = new AtomicInteger(0);
+    /**
+     * 创建RocksDB参数，默认由Configuration中的KEY_ROCKS_*决定，可以覆盖此方法自定义
+     *
+     * @return RocksDB参数
+     */
+    protected RocksDBOptions createRocksDBOptions() {
+        return RocksDBOptions.fromConf(getConf());
+    }
 
-    @Override
-    public void initSegmentWriter() throws Exception {
+    private static boolean containsName(List<byte[]> names, byte[] name) {
+        for (byte[] existingName : names) {
+            if (Arrays.equals(existingName, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * 旧版本的fetch/link是单独的数据库，中断的爬取留下的数据导入到对应的column family
+     */
+    private void importLegacySegment(String legacyPath, ColumnFamilyHandle handle) throws RocksDBException {
+        if (!new File(legacyPath).exists()) {
+            return;
+        }
+        LOG.info("import legacy segment " + legacyPath);
+        RocksDB legacyDatabase = RocksDBUtils.open(legacyPath);
+        RocksIterator legacyIterator = legacyDatabase.newIterator();
+        try {
+            for (legacyIterator.seekToFirst(); legacyIterator.isValid(); legacyIterator.next()) {
+                rocksDB.put(handle, legacyIterator.key(), legacyIterator.value());
+            }
+        } finally {
+            legacyIterator.close();
+            legacyDatabase.close();
+        }
+        RocksDB.destroyDB(legacyPath, RocksDBUtils.createDefaultDBOptions());
+        FileUtils.deleteDir(new File(legacyPath));
+    }
 
+    @Override
+    public void close() throws Exception {
+        closeSegmentWriter();
+        if (columnFamilyHandles != null) {
+            for (ColumnFamilyHandle handle : columnFamilyHandles) {
+                handle.close();
+            }
+            columnFamilyHandles = null;
+            crawldbHandle = null;
+            fetchHandle = null;
+            linkHandle = null;
+            frontierHandle = null;
+        }
+        if (crawldbWriteOptions != null) {
+            crawldbWriteOptions.close();
+            crawldbWriteOptions = null;
+        }
+        if (rocksDB != null) {
+            rocksDB.close();
+            rocksDB = null;
+        }
+        if (rocksDBOptions != null) {
+            rocksDBOptions.close();
+            rocksDBOptions = null;
+            crawldbOptions = null;
+            segmentOptions = null;
+        }
+    }
 
-        fetchDatabase = RocksDBUtils.openFetchDatabase(crawlPath);
-        linkDatabase = RocksDBUtils.openLinkDatabase(crawlPath);
+    // 停止时可能仍有未结束的任务写入segment，关闭后的写入抛出IllegalStateException
+    volatile RocksBatchWriter fetchWriter = null;
+    volatile RocksBatchWriter linkWriter = null;
 
-        count_fetch = new AtomicInteger(0);
-        count_link = new AtomicInteger(0);
+    @Override
+    public void initSegmentWriter() throws Exception {
+        fetchWriter = createBatchWriter(fetchHandle);
+        linkWriter = createBatchWriter(linkHandle);
+    }
+
+    protected RocksBatchWriter createBatchWriter(ColumnFamilyHandle handle) {
+        return new RocksBatchWriter(rocksDB, handle,
+                getConf().getRocksWriteBatchSize(),
+                getConf().getRocksWriteFlushInterval(),
+                getConf().getRocksSegmentDisableWAL());
     }
 
     @Override
     public void writeFetchSegment(CrawlDatum fetchDatum) throws Exception {
-        RocksDBUtils.writeDatum(fetchDatabase, fetchDatum);
+        RocksBatchWriter writer = fetchWriter;
+        if (writer == null) {
+            throw new IllegalStateException("fetch segment writer is closed");
+        }
+        writer.writeDatum(fetchDatum);
     }
 
-
     @Override
     public void writeParseSegment(CrawlDatums parseDatums) throws Exception {
-        for (CrawlDatum datum : parseDatums) {
-            RocksDBUtils.writeDatum(linkDatabase, datum);
+        RocksBatchWriter writer = linkWriter;
+        if (writer == null) {
+            throw new IllegalStateException("link segment writer is closed");
         }
+        writer.writeDatums(parseDatums);
     }
 
     @Override
     public void closeSegmentWriter() throws Exception {
-        if (fetchDatabase != null) {
-            fetchDatabase.close();
-            fetchDatabase = null;
-        }
-        if (linkDatabase != null) {
-            linkDatabase.close();
-            linkDatabase = null;
+        try {
+            if (fetchWriter != null) {
+                fetchWriter.close();
+                LOG.info("write " + fetchWriter.getTotalCount() + " records to fetch segment");
+            }
+        } finally {
+            fetchWriter = null;
+            if (linkWriter != null) {
+                try {
+                    linkWriter.close();
+                    LOG.info("write " + linkWriter.getTotalCount() + " records to link segment");
+                } finally {
+                    linkWriter = null;
+                }
+            }
         }
-       
     }
 
+    /**
+     * 合并时crawldb迭代器顺序前进的最大步数，超过后改用seek跳转
+     */
+    public static final int MERGE_MAX_SEQUENTIAL_STEPS = 16;
+
+    /**
+     * 合并fetch和link到crawldb
+     * fetch中的记录直接覆盖crawldb；link中的记录只在crawldb中不存在时写入，
+     * 写入crawldb的同时按状态更新frontier，
+     * 由于link和crawldb都按key有序，通过两个迭代器的归并比较判断是否存在，
+     * 不需要对每个链接做一次随机读，写入通过WriteBatch批量进行
+     * (rocksdbjni不支持用Java实现自定义merge operator，因此采用归并方式)
+     */
     @Override
     public void merge() throws Exception {
         LOG.info("start merge");
-        RocksDB crawldbDatabase = RocksDBUtils.openCrawldbDatabase(crawlPath);
-
 
         /*合并fetch库*/
         LOG.info("merge fetch database");
-        RocksDB fetchDatabase = RocksDBUtils.openFetchDatabase(crawlPath);
-        RocksIterator fetchIterator = fetchDatabase.newIterator();
-        for(fetchIterator.seekToFirst(); fetchIterator.isValid(); fetchIterator.next()){
-            crawldbDatabase.put(fetchIterator.key(), fetchIterator.value());
+        RocksBatchWriter crawldbWriter = createMergeWriter();
+        RocksIterator fetchIterator = rocksDB.newIterator(fetchHandle);
+        try {
+            for (fetchIterator.seekToFirst(); fetchIterator.isValid(); fetchIterator.next()) {
+                putCrawldb(crawldbWriter, fetchIterator.key(), fetchIterator.value());
+            }
+        } finally {
+            fetchIterator.close();
+            crawldbWriter.close();
         }
-        fetchDatabase.close();
 
         /*合并link库*/
         LOG.info("merge link database");
-        RocksDB linkDatabase = RocksDBUtils.openLinkDatabase(crawlPath);
-        RocksIterator linkIterator = linkDatabase.newIterator();
-        for(linkIterator.seekToFirst(); linkIterator.isValid(); linkIterator.next()){
-            if(crawldbDatabase.get(linkIterator.key()) == null){
-                crawldbDatabase.put(linkIterator.key(), linkIterator.value());
+        crawldbWriter = createMergeWriter();
+        // 迭代器基于创建时的快照，不会看到本次合并写入的数据
+        RocksIterator linkIterator = rocksDB.newIterator(linkHandle);
+        RocksIterator crawldbIterator = rocksDB.newIterator(crawldbHandle);
+        try {
+            crawldbIterator.seekToFirst();
+            for (linkIterator.seekToFirst(); linkIterator.isValid(); linkIterator.next()) {
+                byte[] linkKey = linkIterator.key();
+                int cmp = 1;
+                int steps = 0;
+                while (crawldbIterator.isValid()
+                        && (cmp = compareKeys(crawldbIterator.key(), linkKey)) < 0) {
+                    if (++steps > MERGE_MAX_SEQUENTIAL_STEPS) {
+                        crawldbIterator.seek(linkKey);
+                    } else {
+                        crawldbIterator.next();
+                    }
+                }
+                if (!crawldbIterator.isValid() || cmp != 0) {
+                    putCrawldb(crawldbWriter, linkKey, linkIterator.value());
+                }
             }
+        } finally {
+            crawldbIterator.close();
+            linkIterator.close();
+            crawldbWriter.close();
         }
-        linkDatabase.close();
 
         LOG.info("end merge");
-        crawldbDatabase.close();
-
 
-
-//        env.removeDatabase(null, "fetch");
-        RocksDBUtils.destroyFetchDatabase(crawlPath);
+        fetchHandle = resetColumnFamily(fetchHandle, segmentOptions);
         LOG.debug("remove fetch database");
-//        env.removeDatabase(null, "link");
-        RocksDBUtils.destroyLinkDatabase(crawlPath);
+        linkHandle = resetColumnFamily(linkHandle, segmentOptions);
         LOG.debug("remove link database");
+    }
 
+    protected RocksBatchWriter createMergeWriter() {
+        return new RocksBatchWriter(rocksDB, crawldbHandle,
+                getConf().getRocksWriteBatchSize(), Long.MAX_VALUE, false);
     }
 
+    /**
+     * 按RocksDB默认的bytewise顺序比较两个key
+     */
+    static int compareKeys(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * 删除并重建column family，比逐条删除快得多
+     */
+    private ColumnFamilyHandle resetColumnFamily(ColumnFamilyHandle handle, ColumnFamilyOptions options) throws RocksDBException {
+        int index = columnFamilyHandles.indexOf(handle);
+        ColumnFamilyDescriptor descriptor = new ColumnFamilyDescriptor(handle.getName(), options);
+        rocksDB.dropColumnFamily(handle);
+        handle.close();
+        ColumnFamilyHandle newHandle = rocksDB.createColumnFamily(descriptor);
+        columnFamilyHandles.set(index, newHandle);
+        return newHandle;
+    }
 
     @Override
     public boolean isDBExists() {
@@ -213,8 +528,33 @@ public class RocksDBManager extends DBManager {
 
     @Override
     protected Generator createGenerator() throws Exception{
-        return new RocksGenerator(crawlPath);
+        return createScanGenerator(crawldbHandle);
+    }
 
+    /**
+     * Configuration.KEY_ROCKS_GENERATE_THREADS大于1时多线程分区扫描，否则顺序扫描
+     */
+    protected Generator createScanGenerator(ColumnFamilyHandle handle) {
+        int generateThreads = getConf().getOrDefault(Configuration.KEY_ROCKS_GENERATE_THREADS, 1);
+        if (generateThreads > 1) {
+            return new RocksPartitionedGenerator(rocksDB, handle, generateThreads);
+        }
+        return new RocksGenerator(rocksDB, handle);
+    }
+
+    /**
+     * 过滤器为StatusGeneratorFilter时遍历frontier，生成的任务与遍历crawldb相同，
+     * 其他过滤器(包括StatusGeneratorFilter的子类)可能需要已成功执行的任务，仍遍历crawldb
+     */
+    @Override
+    public Generator createGenerator(GeneratorFilter generatorFilter) throws Exception {
+        if (generatorFilter == null || generatorFilter.getClass() != StatusGeneratorFilter.class) {
+            return super.createGenerator(generatorFilter);
+        }
+        Generator generator = createScanGenerator(frontierHandle);
+        generator.setFilter(generatorFilter);
+        ConfigurationUtils.setTo(this, generator, generatorFilter);
+        return generator;
     }
 
 }
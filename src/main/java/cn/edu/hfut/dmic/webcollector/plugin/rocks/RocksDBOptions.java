@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.plugin.rocks;
+
+import cn.edu.hfut.dmic.webcollector.conf.Configuration;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.RocksObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RocksDBManager使用的RocksDB参数
+ * PROFILE_DEFAULT使用RocksDB的默认参数；
+ * PROFILE_CRAWL针对爬虫的读写特点调整：crawldb使用布隆过滤器加速merge时的存在性查询，
+ * fetch/link使用更大的memtable承接大量链接写入，所有column family共享一个LRU块缓存
+ * 通过Configuration中KEY_ROCKS_*设置，也可以直接用setter链式构造
+ *
+ * @author hu
+ */
+public class RocksDBOptions {
+
+    public static final String PROFILE_DEFAULT = "default";
+    public static final String PROFILE_CRAWL = "crawl";
+
+    protected String profile = PROFILE_CRAWL;
+    // 共享块缓存大小(MB)
+    protected int blockCacheSize = 128;
+    // 布隆过滤器每个key的位数，小于等于0时不使用
+    protected int bloomBitsPerKey = 10;
+    // crawldb的memtable大小(MB)，fetch/link为其2倍
+    protected int writeBufferSize = 64;
+    // lz4、zstd、snappy或none
+    protected String compression = "lz4";
+
+    // 创建的native对象，close时统一释放
+    private List<RocksObject> resources = new ArrayList<RocksObject>();
+    private LRUCache blockCache = null;
+
+    public static RocksDBOptions fromConf(Configuration conf) {
+        return new RocksDBOptions()
+                .setProfile(conf.getRocksOptionsProfile())
+                .setBlockCacheSize(conf.getRocksBlockCacheSize())
+                .setBloomBitsPerKey(conf.getRocksBloomBitsPerKey())
+                .setWriteBufferSize(conf.getRocksWriteBufferSize())
+                .setCompression(conf.getRocksCompression());
+    }
+
+    protected boolean isCrawlProfile() {
+        return PROFILE_CRAWL.equals(profile);
+    }
+
+    private <T extends RocksObject> T track(T resource) {
+        resources.add(resource);
+        return resource;
+    }
+
+    protected CompressionType compressionType() {
+        String name = (compression == null) ? "none" : compression.toLowerCase();
+        if (name.equals("lz4")) {
+            return CompressionType.LZ4_COMPRESSION;
+        } else if (name.equals("zstd")) {
+            return CompressionType.ZSTD_COMPRESSION;
+        } else if (name.equals("snappy")) {
+            return CompressionType.SNAPPY_COMPRESSION;
+        } else if (name.equals("none")) {
+            return CompressionType.NO_COMPRESSION;
+        }
+        throw new IllegalArgumentException("unsupported compression: " + compression);
+    }
+
+    protected BlockBasedTableConfig createTableConfig(boolean bloomFilter) {
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+        if (blockCache == null) {
+            blockCache = track(new LRUCache(blockCacheSize * 1024L * 1024L));
+        }
+        tableConfig.setBlockCache(blockCache);
+        if (bloomFilter && bloomBitsPerKey > 0) {
+            tableConfig.setFilter(track(new BloomFilter(bloomBitsPerKey, false)))
+                    .setCacheIndexAndFilterBlocks(true)
+                    .setPinL0FilterAndIndexBlocksInCache(true);
+        }
+        return tableConfig;
+    }
+
+    public DBOptions createDBOptions() {
+        DBOptions dbOptions = track(new DBOptions())
+                .setCreateIfMissing(true)
+                .setCreateMissingColumnFamilies(true);
+        if (isCrawlProfile()) {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            dbOptions.setIncreaseParallelism(Math.max(2, cpus))
+                    .setMaxBackgroundJobs(Math.max(2, Math.min(cpus, 8)))
+                    .setBytesPerSync(1024L * 1024L);
+        }
+        return dbOptions;
+    }
+
+    /**
+     * crawldb：以点查询(merge时判断是否存在)和全量遍历为主
+     */
+    public ColumnFamilyOptions createCrawldbOptions() {
+        ColumnFamilyOptions options = track(new ColumnFamilyOptions());
+        if (isCrawlProfile()) {
+            options.setTableFormatConfig(createTableConfig(true))
+                    .setWriteBufferSize(writeBufferSize * 1024L * 1024L)
+                    .setMaxWriteBufferNumber(3)
+                    .setLevelCompactionDynamicLevelBytes(true)
+                    .setCompressionType(compressionType());
+        }
+        return options;
+    }
+
+    /**
+     * fetch/link：每层写入大量数据，合并时顺序遍历一次后删除
+     */
+    public ColumnFamilyOptions createSegmentOptions() {
+        ColumnFamilyOptions options = track(new ColumnFamilyOptions());
+        if (isCrawlProfile()) {
+            options.setTableFormatConfig(createTableConfig(false))
+                    .setWriteBufferSize(writeBufferSize * 2L * 1024L * 1024L)
+                    .setMaxWriteBufferNumber(4)
+                    .setMinWriteBufferNumberToMerge(2)
+                    .setCompressionType(compressionType());
+        }
+        return options;
+    }
+
+    /**
+     * 释放创建的所有参数对象，需要在数据库关闭之后调用
+     */
+    public void close() {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+        resources.clear();
+        blockCache = null;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public RocksDBOptions setProfile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public int getBlockCacheSize() {
+        return blockCacheSize;
+    }
+
+    public RocksDBOptions setBlockCacheSize(int blockCacheSize) {
+        this.blockCacheSize = blockCacheSize;
+        return this;
+    }
+
+    public int getBloomBitsPerKey() {
+        return bloomBitsPerKey;
+    }
+
+    public RocksDBOptions setBloomBitsPerKey(int bloomBitsPerKey) {
+        this.bloomBitsPerKey = bloomBitsPerKey;
+        return this;
+    }
+
+    public int getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public RocksDBOptions setWriteBufferSize(int writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+        return this;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public RocksDBOptions setCompression(String compression) {
+        this.compression = compression;
+        return this;
+    }
+}
@@ -41,7 +41,7 @@ public class RocksDBReader {
 
     public RocksDBReader(String crawlPath) throws RocksDBException {
         this.crawlPath = crawlPath;
-        crawldbDatabase = RocksDBUtils.openCrawldbDatabase(crawlPath);
+        crawldbDatabase = RocksDBUtils.openReadOnly(RocksDBUtils.getCrawldbPath(crawlPath));
         crawldbIterator = crawldbDatabase.newIterator();
         crawldbIterator.seekToFirst();
     }
@@ -61,6 +61,10 @@ public class RocksDBReader {
     }
 
     public void close() {
+        if (crawldbIterator != null) {
+            crawldbIterator.close();
+            crawldbIterator = null;
+        }
         if (crawldbDatabase != null) {
             crawldbDatabase.close();
         }
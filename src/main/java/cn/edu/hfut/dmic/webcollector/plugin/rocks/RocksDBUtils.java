@@ -19,9 +19,7 @@
 package cn.edu.hfut.dmic.webcollector.plugin.rocks;
 
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
-import cn.edu.hfut.dmic.webcollector.util.CrawlDatumFormater;
-import cn.edu.hfut.dmic.webcollector.util.GsonUtils;
-import com.google.gson.JsonArray;
+import cn.edu.hfut.dmic.webcollector.util.CrawlDatumCodec;
 import org.apache.commons.io.FilenameUtils;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
@@ -41,6 +39,12 @@ public class RocksDBUtils {
         RocksDB.loadLibrary();
     }
 
+    /*fetch和link在crawldb数据库中的column family名称，crawldb使用默认column family*/
+    public static final String FETCH_COLUMN_FAMILY = "fetch";
+    public static final String LINK_COLUMN_FAMILY = "link";
+    /*只包含未成功执行的任务的column family，生成任务时代替crawldb遍历*/
+    public static final String FRONTIER_COLUMN_FAMILY = "frontier";
+
     public static String getFetchPath(String crawlPath){
         return new File(crawlPath, "fetch").getAbsolutePath();
 //        return FilenameUtils.concat(crawlPath, "fetch");
@@ -51,6 +55,11 @@ public class RocksDBUtils {
 //        return FilenameUtils.concat(crawlPath, "link");
     }
 
+    /*存在时表示frontier需要根据crawldb重建*/
+    public static String getFrontierRebuildPath(String crawlPath){
+        return new File(crawlPath, "frontier.rebuild").getAbsolutePath();
+    }
+
     public static String getCrawldbPath(String crawlPath){
         return new File(crawlPath, "crawldb").getAbsolutePath();
 //        return FilenameUtils.concat(crawlPath, "crawldb");
@@ -94,10 +103,16 @@ public class RocksDBUtils {
         return RocksDB.open(rocksOptions, dbPath);
     }
     
+    /**
+     * 以只读方式打开数据库的默认column family，不需要获取锁，可以在爬取过程中读取crawldb
+     */
+    public static RocksDB openReadOnly(String dbPath) throws RocksDBException {
+        Options rocksOptions = RocksDBUtils.createDefaultDBOptions();
+        return RocksDB.openReadOnly(rocksOptions, dbPath);
+    }
+
     public static void writeDatum(RocksDB rocksDB,CrawlDatum datum) throws Exception{
-        String key = datum.key();
-        String value = datum.asJsonArray().toString();
-        put(rocksDB, key, value);
+        rocksDB.put(strToKeyOrValue(datum.key()), CrawlDatumCodec.encode(datum));
     }
     
     public static void put(RocksDB rocksDB, String key,String value) throws UnsupportedEncodingException, RocksDBException {
@@ -123,8 +138,6 @@ public class RocksDBUtils {
     
      public static CrawlDatum createCrawlDatum(byte[] key, byte[] value) throws Exception{
         String datumKey=new String(key,"utf-8");
-        String valueStr=new String(value,"utf-8");
-        JsonArray datumJsonArray = GsonUtils.parse(valueStr).getAsJsonArray();
-        return CrawlDatum.fromJsonArray(datumKey, datumJsonArray);
+        return CrawlDatumCodec.decode(datumKey, value);
     }
 }
@@ -19,25 +19,25 @@ package cn.edu.hfut.dmic.webcollector.plugin.rocks;
 
 import cn.edu.hfut.dmic.webcollector.crawldb.Generator;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDB;
-import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * 遍历crawldb(或frontier)的Generator，使用RocksDBManager中已打开的数据库，close时只关闭迭代器
+ *
  * @author hu
  */
 public class RocksGenerator extends Generator {
 
     public static final Logger LOG = LoggerFactory.getLogger(RocksGenerator.class);
 
-    RocksDB crawldbDatabase = null;
     RocksIterator crawldbIterator;
 
-    public RocksGenerator(String crawlPath) throws RocksDBException {
-        crawldbDatabase = RocksDBUtils.openCrawldbDatabase(crawlPath);
-        crawldbIterator = crawldbDatabase.newIterator();
+    public RocksGenerator(RocksDB rocksDB, ColumnFamilyHandle crawldbHandle) {
+        crawldbIterator = rocksDB.newIterator(crawldbHandle);
         crawldbIterator.seekToFirst();
     }
 
@@ -54,9 +54,9 @@ public class RocksGenerator extends Generator {
     }
 
     public void close() throws Exception {
-        if (crawldbDatabase != null) {
-            crawldbDatabase.close();
-            crawldbDatabase = null;
+        if (crawldbIterator != null) {
+            crawldbIterator.close();
+            crawldbIterator = null;
         }
     }
 
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2014 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.plugin.rocks;
+
+import cn.edu.hfut.dmic.webcollector.crawldb.Generator;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+import org.rocksdb.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多线程并行扫描的Generator，将key范围划分为多个分区，每个线程用带上界的迭代器扫描一个分区，
+ * 解码和过滤在扫描线程中进行，结果写入有界队列，队列已满时扫描线程阻塞
+ * 所有分区基于同一个快照，生成的任务与RocksGenerator相同，但不保证key的顺序，
+ * GeneratorFilter会被多个线程同时调用，需要是线程安全的
+ *
+ * @author hu
+ */
+public class RocksPartitionedGenerator extends Generator {
+
+    public static final Logger LOG = LoggerFactory.getLogger(RocksPartitionedGenerator.class);
+
+    public static final int QUEUE_SIZE = 1024;
+    // 插值计算分区边界时使用的字节数
+    private static final int INTERPOLATE_BYTES = 7;
+
+    protected RocksDB rocksDB;
+    protected ColumnFamilyHandle handle;
+    protected int partitions;
+
+    private Snapshot snapshot = null;
+    private Thread[] workers = null;
+    private final BlockingQueue<CrawlDatum> queue = new ArrayBlockingQueue<CrawlDatum>(QUEUE_SIZE);
+    private final AtomicInteger runningWorkers = new AtomicInteger(0);
+    private volatile boolean closed = false;
+
+    /**
+     * @param rocksDB 数据库
+     * @param handle 扫描的column family
+     * @param partitions 分区数(扫描线程数)，key范围较小时实际分区数可能更少
+     */
+    public RocksPartitionedGenerator(RocksDB rocksDB, ColumnFamilyHandle handle, int partitions) {
+        this.rocksDB = rocksDB;
+        this.handle = handle;
+        this.partitions = partitions;
+    }
+
+    /**
+     * 第一次生成时计算分区并启动扫描线程，此时过滤器和配置已经设置
+     */
+    private synchronized void start() {
+        if (workers != null) {
+            return;
+        }
+        snapshot = rocksDB.getSnapshot();
+        List<byte[]> bounds = computeBounds();
+        LOG.info("scan " + (bounds.size() + 1) + " partitions");
+        int maxExecuteCount = getMaxExecuteCount();
+        workers = new Thread[bounds.size() + 1];
+        runningWorkers.set(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            byte[] lower = i == 0 ? null : bounds.get(i - 1);
+            byte[] upper = i == bounds.size() ? null : bounds.get(i);
+            workers[i] = new ScanThread(lower, upper, maxExecuteCount);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * 通过二分划分key范围：在两端实际存在的key之间按字节插值得到中点，
+     * 再用seek将中点对齐到实际存在的key，两侧的范围收缩到实际存在的key后继续划分，
+     * 因此key集中在某些前缀(例如http://和https://)时分区仍然比较均匀
+     *
+     * @return 升序的分区边界，第i个分区为[bounds[i-1], bounds[i])
+     */
+    protected List<byte[]> computeBounds() {
+        List<byte[]> bounds = new ArrayList<byte[]>();
+        ReadOptions readOptions = new ReadOptions().setSnapshot(snapshot);
+        RocksIterator iterator = rocksDB.newIterator(handle, readOptions);
+        try {
+            iterator.seekToFirst();
+            if (!iterator.isValid()) {
+                return bounds;
+            }
+            byte[] first = iterator.key();
+            iterator.seekToLast();
+            byte[] last = iterator.key();
+            split(iterator, first, last, partitions, bounds);
+        } finally {
+            iterator.close();
+            readOptions.close();
+        }
+        return bounds;
+    }
+
+    private static void split(RocksIterator iterator, byte[] low, byte[] high, int count, List<byte[]> bounds) {
+        if (count <= 1 || RocksDBManager.compareKeys(low, high) >= 0) {
+            return;
+        }
+        byte[] middle = interpolate(low, high);
+        iterator.seek(middle);
+        if (!iterator.isValid() || RocksDBManager.compareKeys(iterator.key(), low) <= 0) {
+            iterator.seek(high);
+        }
+        byte[] upperFirst = iterator.key();
+        iterator.prev();
+        byte[] lowerLast = iterator.key();
+
+        int lowerCount = count / 2;
+        split(iterator, low, lowerLast, lowerCount, bounds);
+        bounds.add(upperFirst);
+        split(iterator, upperFirst, high, count - lowerCount, bounds);
+    }
+
+    /**
+     * 在low和high公共前缀之后的若干字节上取中点
+     */
+    static byte[] interpolate(byte[] low, byte[] high) {
+        int prefix = 0;
+        while (prefix < low.length && prefix < high.length && low[prefix] == high[prefix]) {
+            prefix++;
+        }
+        long lowValue = readBytes(low, prefix);
+        long highValue = readBytes(high, prefix);
+        long middleValue = lowValue + (highValue - lowValue) / 2;
+        byte[] middle = Arrays.copyOf(low, prefix + INTERPOLATE_BYTES);
+        for (int i = INTERPOLATE_BYTES - 1; i >= 0; i--) {
+            middle[prefix + i] = (byte) middleValue;
+            middleValue >>>= 8;
+        }
+        return middle;
+    }
+
+    private static long readBytes(byte[] key, int offset) {
+        long value = 0;
+        for (int i = 0; i < INTERPOLATE_BYTES; i++) {
+            int index = offset + i;
+            value = (value << 8) | (index < key.length ? key[index] & 0xff : 0);
+        }
+        return value;
+    }
+
+    private class ScanThread extends Thread {
+
+        private final byte[] lower;
+        private final byte[] upper;
+        private final int maxExecuteCount;
+
+        ScanThread(byte[] lower, byte[] upper, int maxExecuteCount) {
+            this.lower = lower;
+            this.upper = upper;
+            this.maxExecuteCount = maxExecuteCount;
+        }
+
+        @Override
+        public void run() {
+            ReadOptions readOptions = new ReadOptions().setSnapshot(snapshot);
+            Slice upperSlice = null;
+            if (upper != null) {
+                upperSlice = new Slice(upper);
+                readOptions.setIterateUpperBound(upperSlice);
+            }
+            RocksIterator iterator = rocksDB.newIterator(handle, readOptions);
+            try {
+                if (lower == null) {
+                    iterator.seekToFirst();
+                } else {
+                    iterator.seek(lower);
+                }
+                for (; iterator.isValid() && !closed; iterator.next()) {
+                    CrawlDatum datum = accept(RocksDBUtils.createCrawlDatum(iterator.key(), iterator.value()), maxExecuteCount);
+                    if (datum != null) {
+                        queue.put(datum);
+                    }
+                }
+            } catch (InterruptedException ex) {
+            } catch (Exception ex) {
+                LOG.info("Exception when generating", ex);
+            } finally {
+                iterator.close();
+                readOptions.close();
+                if (upperSlice != null) {
+                    upperSlice.close();
+                }
+                runningWorkers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 从队列中取出扫描线程已过滤的任务，线程安全
+     */
+    @Override
+    protected CrawlDatum nextFiltered() {
+        start();
+        try {
+            while (true) {
+                CrawlDatum datum = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (datum != null) {
+                    return datum;
+                }
+                // 扫描线程在写入最后一个任务之后才会结束
+                if (runningWorkers.get() == 0) {
+                    return queue.poll();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 过滤在扫描线程中进行，返回的任务已经过滤
+     */
+    @Override
+    public CrawlDatum nextWithoutFilter() throws Exception {
+        return nextFiltered();
+    }
+
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        synchronized (this) {
+            if (workers != null) {
+                for (Thread worker : workers) {
+                    worker.interrupt();
+                }
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            }
+            if (snapshot != null) {
+                rocksDB.releaseSnapshot(snapshot);
+                snapshot = null;
+            }
+        }
+    }
+}
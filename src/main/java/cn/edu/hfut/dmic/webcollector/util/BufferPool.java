@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读取响应体使用的定长缓冲块池
+ * 长度未知时把数据读入若干个缓冲块，读完后一次拷贝成结果数组，
+ * 缓冲块在线程之间共享复用(虚拟线程下ThreadLocal无法复用)
+ *
+ * @author hu
+ */
+public class BufferPool {
+
+    public static final int CHUNK_SIZE = 32 * 1024;
+    // 池中最多保留的缓冲块数量
+    public static final int MAX_POOLED_CHUNKS = 256;
+
+    private static final ConcurrentLinkedQueue<byte[]> chunks = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger pooledCount = new AtomicInteger(0);
+
+    public static byte[] acquire() {
+        byte[] chunk = chunks.poll();
+        if (chunk == null) {
+            return new byte[CHUNK_SIZE];
+        }
+        pooledCount.decrementAndGet();
+        return chunk;
+    }
+
+    public static void release(byte[] chunk) {
+        if (chunk.length != CHUNK_SIZE) {
+            return;
+        }
+        if (pooledCount.incrementAndGet() > MAX_POOLED_CHUNKS) {
+            pooledCount.decrementAndGet();
+            return;
+        }
+        chunks.offer(chunk);
+    }
+
+    /**
+     * @return 池中的缓冲块数量
+     */
+    static int getPooledCount() {
+        return pooledCount.get();
+    }
+
+    /**
+     * 读取输入流，超过maxSize的部分不再读取
+     *
+     * @param is 输入流
+     * @param contentLength 已知的长度，未知时为-1
+     * @param maxSize 最大读取的字节数，小于等于0时不限制
+     * @return 读取的数据
+     */
+    public static byte[] readFully(InputStream is, long contentLength, int maxSize) throws IOException {
+        long limit = maxSize > 0 ? maxSize : Integer.MAX_VALUE - 8;
+        if (contentLength >= 0 && contentLength <= limit) {
+            // 长度已知时直接读入结果数组
+            byte[] result = new byte[(int) contentLength];
+            int size = 0;
+            while (size < result.length) {
+                int read = is.read(result, size, result.length - size);
+                if (read == -1) {
+                    byte[] truncated = new byte[size];
+                    System.arraycopy(result, 0, truncated, 0, size);
+                    return truncated;
+                }
+                size += read;
+            }
+            // 实际长度与Content-Length不一致时继续读取剩余部分
+            int next = is.read();
+            if (next == -1) {
+                return result;
+            }
+            return readChunks(is, result, next, limit);
+        }
+        return readChunks(is, null, -1, limit);
+    }
+
+    private static byte[] readChunks(InputStream is, byte[] head, int nextByte, long limit) throws IOException {
+        ArrayList<byte[]> usedChunks = new ArrayList<byte[]>();
+        long total = 0;
+        try {
+            if (head != null) {
+                total = head.length;
+            }
+            byte[] chunk = null;
+            int chunkSize = 0;
+            if (nextByte >= 0 && total < limit) {
+                chunk = acquire();
+                usedChunks.add(chunk);
+                chunk[chunkSize++] = (byte) nextByte;
+                total++;
+            }
+            while (total < limit) {
+                if (chunk == null || chunkSize == chunk.length) {
+                    chunk = acquire();
+                    usedChunks.add(chunk);
+                    chunkSize = 0;
+                }
+                int toRead = (int) Math.min(chunk.length - chunkSize, limit - total);
+                int read = is.read(chunk, chunkSize, toRead);
+                if (read == -1) {
+                    break;
+                }
+                chunkSize += read;
+                total += read;
+            }
+
+            byte[] result = new byte[(int) total];
+            int offset = 0;
+            if (head != null) {
+                System.arraycopy(head, 0, result, 0, head.length);
+                offset = head.length;
+            }
+            for (byte[] used : usedChunks) {
+                int length = (int) Math.min(used.length, total - offset);
+                System.arraycopy(used, 0, result, offset, length);
+                offset += length;
+            }
+            return result;
+        } finally {
+            for (byte[] used : usedChunks) {
+                release(used);
+            }
+        }
+    }
+}
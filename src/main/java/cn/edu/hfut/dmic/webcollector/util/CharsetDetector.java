@@ -17,82 +17,125 @@
  */
 package cn.edu.hfut.dmic.webcollector.util;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.mozilla.universalchardet.UniversalDetector;
 
 /**
  * 字符集自动检测
+ * 只检测内容开头的一部分：先检查BOM，再在开头SNIFF_SIZE字节中按字节查找meta标签，
+ * 都失败时分块交给UniversalDetector，检测完成(isDone)即停止
  *
  * @author hu
  */
 public class CharsetDetector {
 
-    //从Nutch借鉴的网页编码检测代码
-    private static final int CHUNK_SIZE = 2000;
+    // 查找BOM和meta标签的字节数
+    public static int SNIFF_SIZE = 8192;
+    // UniversalDetector最多检测的字节数
+    public static int MOZILLA_MAX_SIZE = 256 * 1024;
+    private static final int MOZILLA_CHUNK_SIZE = 4096;
+    // meta标签的最大长度
+    private static final int MAX_META_LENGTH = 1024;
 
-    private static Pattern metaPattern = Pattern.compile(
-            "<meta\\s+([^>]*http-equiv=(\"|')?content-type(\"|')?[^>]*)>",
+    private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static Pattern httpEquivPattern = Pattern.compile(
+            "http-equiv\\s*=\\s*(\"|')?content-type(\"|')?",
             Pattern.CASE_INSENSITIVE);
     private static Pattern charsetPattern = Pattern.compile(
             "charset=\\s*([a-z][_\\-0-9a-z]*)", Pattern.CASE_INSENSITIVE);
     private static Pattern charsetPatternHTML5 = Pattern.compile(
-            "<meta\\s+charset\\s*=\\s*[\"']?([a-z][_\\-0-9a-z]*)[^>]*>",
+            "^<meta\\s+(?:[^>]*\\s)?charset\\s*=\\s*[\"']?([a-z][_\\-0-9a-z]*)",
             Pattern.CASE_INSENSITIVE);
 
-    //从Nutch借鉴的网页编码检测代码
-    private static String guessEncodingByNutch(byte[] content) {
-        int length = Math.min(content.length, CHUNK_SIZE);
+    // Content-Type到字符集的缓存，值为""表示Content-Type中没有可用的字符集
+    private static final int MAX_CONTENT_TYPE_CACHE_SIZE = 1024;
+    private static final ConcurrentHashMap<String, String> contentTypeCache = new ConcurrentHashMap<String, String>();
 
-        String str = "";
-        try {
-            str = new String(content, "ascii");
-        } catch (UnsupportedEncodingException e) {
-            return null;
+    private static String guessEncodingByBOM(byte[] content) {
+        int length = content.length;
+        if (length >= 3 && content[0] == (byte) 0xEF
+                && content[1] == (byte) 0xBB && content[2] == (byte) 0xBF) {
+            return "UTF-8";
+        } else if (length >= 2) {
+            if (content[0] == (byte) 0xFF && content[1] == (byte) 0xFE) {
+                return "UTF-16LE";
+            } else if (content[0] == (byte) 0xFE && content[1] == (byte) 0xFF) {
+                return "UTF-16BE";
+            }
         }
+        return null;
+    }
 
-        Matcher metaMatcher = metaPattern.matcher(str);
-        String encoding = null;
-        if (metaMatcher.find()) {
-            Matcher charsetMatcher = charsetPattern.matcher(metaMatcher.group(1));
-            if (charsetMatcher.find()) {
-                encoding = new String(charsetMatcher.group(1));
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == '/';
+    }
+
+    private static int lower(byte b) {
+        return (b >= 'A' && b <= 'Z') ? b + 32 : b;
+    }
+
+    /**
+     * 在开头SNIFF_SIZE字节中按字节查找meta标签，只对找到的标签做正则匹配
+     * 支持&lt;meta http-equiv="content-type" content="...charset=xxx"&gt;和&lt;meta charset="xxx"&gt;
+     */
+    private static String guessEncodingByMeta(byte[] content) {
+        int length = Math.min(content.length, SNIFF_SIZE);
+        for (int i = 0; i + 6 < length; i++) {
+            if (content[i] != '<'
+                    || lower(content[i + 1]) != 'm' || lower(content[i + 2]) != 'e'
+                    || lower(content[i + 3]) != 't' || lower(content[i + 4]) != 'a'
+                    || !isSpace(content[i + 5])) {
+                continue;
             }
-        }
-        if (encoding == null) {
-            metaMatcher = charsetPatternHTML5.matcher(str);
-            if (metaMatcher.find()) {
-                encoding = new String(metaMatcher.group(1));
+            int end = i + 6;
+            int maxEnd = Math.min(length, i + MAX_META_LENGTH);
+            while (end < maxEnd && content[end] != '>') {
+                end++;
             }
-        }
-        if (encoding == null) {
-            if (length >= 3 && content[0] == (byte) 0xEF
-                    && content[1] == (byte) 0xBB && content[2] == (byte) 0xBF) {
-                encoding = "UTF-8";
-            } else if (length >= 2) {
-                if (content[0] == (byte) 0xFF && content[1] == (byte) 0xFE) {
-                    encoding = "UTF-16LE";
-                } else if (content[0] == (byte) 0xFE
-                        && content[1] == (byte) 0xFF) {
-                    encoding = "UTF-16BE";
+            // ISO-8859-1逐字节转换为字符，只转换这个标签
+            String tag = new String(content, i, end - i, ISO_8859_1);
+            Matcher html5Matcher = charsetPatternHTML5.matcher(tag);
+            if (html5Matcher.find()) {
+                return html5Matcher.group(1);
+            }
+            if (httpEquivPattern.matcher(tag).find()) {
+                Matcher charsetMatcher = charsetPattern.matcher(tag);
+                if (charsetMatcher.find()) {
+                    return charsetMatcher.group(1);
                 }
             }
+            i = end;
         }
+        return null;
+    }
 
+    //从Nutch借鉴的网页编码检测代码，只检测开头的SNIFF_SIZE字节
+    private static String guessEncodingByNutch(byte[] content) {
+        String encoding = guessEncodingByBOM(content);
+        if (encoding == null) {
+            encoding = guessEncodingByMeta(content);
+        }
         return encoding;
     }
 
     /**
      * 根据字节数组，猜测可能的字符集，如果检测失败，返回utf-8
+     * 分块交给UniversalDetector，检测完成或超过MOZILLA_MAX_SIZE时停止
      *
      * @param bytes 待检测的字节数组
      * @return 可能的字符集，如果检测失败，返回utf-8
      */
     public static String guessEncodingByMozilla(byte[] bytes) {
-        String DEFAULT_ENCODING = "UTF-8";
         UniversalDetector detector = new UniversalDetector(null);
-        detector.handleData(bytes, 0, bytes.length);
+        int length = Math.min(bytes.length, MOZILLA_MAX_SIZE);
+        for (int offset = 0; offset < length && !detector.isDone(); offset += MOZILLA_CHUNK_SIZE) {
+            detector.handleData(bytes, offset, Math.min(MOZILLA_CHUNK_SIZE, length - offset));
+        }
         detector.dataEnd();
         String encoding = detector.getDetectedCharset();
         detector.reset();
@@ -102,6 +145,37 @@ public class CharsetDetector {
         return encoding;
     }
 
+    /**
+     * 从Content-Type(例如text/html; charset=gbk)中获取字符集，结果会被缓存
+     * @param contentType Content-Type
+     * @return 字符集，没有或不支持时返回null
+     */
+    public static String getCharsetFromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String charset = contentTypeCache.get(contentType);
+        if (charset == null) {
+            charset = "";
+            Matcher charsetMatcher = charsetPattern.matcher(contentType);
+            if (charsetMatcher.find()) {
+                String name = charsetMatcher.group(1);
+                try {
+                    if (Charset.isSupported(name)) {
+                        charset = name;
+                    }
+                } catch (IllegalArgumentException ex) {
+                    // 非法的字符集名称
+                }
+            }
+            if (contentTypeCache.size() >= MAX_CONTENT_TYPE_CACHE_SIZE) {
+                contentTypeCache.clear();
+            }
+            contentTypeCache.put(contentType, charset);
+        }
+        return charset.isEmpty() ? null : charset;
+    }
+
     /**
      * 根据字节数组，猜测可能的字符集，如果检测失败，返回utf-8
      * @param content 待检测的字节数组
@@ -122,4 +196,18 @@ public class CharsetDetector {
             return encoding;
         }
     }
+
+    /**
+     * 优先使用Content-Type中的字符集，没有时根据内容猜测
+     * @param content 待检测的字节数组
+     * @param contentType Content-Type，可以为null
+     * @return 可能的字符集，如果检测失败，返回utf-8
+     */
+    public static String guessEncoding(byte[] content, String contentType) {
+        String encoding = getCharsetFromContentType(contentType);
+        if (encoding != null) {
+            return encoding;
+        }
+        return guessEncoding(content);
+    }
 }
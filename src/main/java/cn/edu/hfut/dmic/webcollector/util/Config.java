@@ -39,6 +39,51 @@ public class Config {
 
     public static int EXECUTE_INTERVAL = 0;
 
+    /*抓取队列的容量*/
+    public static int FETCH_QUEUE_SIZE = 1000;
+
+    /*异步抓取模式下同时进行中的最大请求数，OkHttpRequester的每个进行中的请求占用一个Dispatcher线程*/
+    public static int MAX_IN_FLIGHT = 1000;
+
+    /*每个host同时执行的最大任务数，大于0时使用HostFetchQueue*/
+    public static int HOST_MAX_CONCURRENCY = 0;
+
+    /*同一host两次请求之间的最小间隔(毫秒)，大于0时使用HostFetchQueue*/
+    public static int HOST_DELAY = 0;
+
+    /*生成任务时按host轮流生成所缓存的任务数，大于0时使用HostInterleavedGenerator*/
+    public static int HOST_INTERLEAVE_WINDOW = 0;
+
+    /*持续爬取模式下内存中待抓取的新链接数上限，超出的链接只写入crawldb，由下一轮生成*/
+    public static int CONTINUOUS_FRONTIER_SIZE = 100000;
+
+    /*RocksDB写入segment时每批的最大记录数*/
+    public static int ROCKS_WRITE_BATCH_SIZE = 1000;
+
+    /*RocksDB写入segment时缓冲的最长时间(毫秒)*/
+    public static int ROCKS_WRITE_FLUSH_INTERVAL = 1000;
+
+    /*RocksDB写入fetch/link临时库时是否关闭WAL*/
+    public static boolean ROCKS_SEGMENT_DISABLE_WAL = false;
+
+    /*RocksDB参数预设，crawl或default，见RocksDBOptions*/
+    public static String ROCKS_OPTIONS_PROFILE = "crawl";
+
+    /*RocksDB共享块缓存大小(MB)*/
+    public static int ROCKS_BLOCK_CACHE_SIZE = 128;
+
+    /*RocksDB crawldb布隆过滤器每个key的位数*/
+    public static int ROCKS_BLOOM_BITS_PER_KEY = 10;
+
+    /*RocksDB crawldb的memtable大小(MB)*/
+    public static int ROCKS_WRITE_BUFFER_SIZE = 64;
+
+    /*RocksDB生成任务时并行扫描crawldb的线程数，大于1时按key范围分区扫描*/
+    public static int ROCKS_GENERATE_THREADS = 1;
+
+    /*RocksDB压缩算法，lz4、zstd、snappy或none*/
+    public static String ROCKS_COMPRESSION = "lz4";
+
     public static boolean AUTO_DETECT_IMG = false;
 
 }
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import cn.edu.hfut.dmic.webcollector.model.CompactMeta;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * CrawlDatum的二进制编码，用于crawldb等持久化存储
+ * 格式(版本2)：
+ * [版本号][url][status][executeTime][executeCount][code][location][score][meta长度][meta]
+ * score为0时只写一个0字节，否则为TAG_DOUBLE加8字节，版本1没有score
+ * 整数使用varint(code使用zigzag)，字符串为varint长度+UTF-8(长度0表示null)，
+ * meta为键值对个数+每个键值对的key、类型标记和值
+ * 旧版本使用JSON数组存储，以'['开头，decode时自动识别
+ *
+ * @author hu
+ */
+public class CrawlDatumCodec {
+
+    public static final byte VERSION = 2;
+    static final byte VERSION_1 = 1;
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    static final byte TAG_NULL = 0;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_LONG = 2;
+    static final byte TAG_DOUBLE = 3;
+    static final byte TAG_TRUE = 4;
+    static final byte TAG_FALSE = 5;
+    // 其他数字类型和嵌套的对象、数组，以JSON字符串保存
+    static final byte TAG_NUMBER = 6;
+    static final byte TAG_JSON = 7;
+
+    public static byte[] encode(CrawlDatum datum) {
+        ByteWriter writer = new ByteWriter(64);
+        writer.writeByte(VERSION);
+        writer.writeString(datum.url());
+        writer.writeVarLong(datum.getStatus());
+        writer.writeVarLong(datum.getExecuteTime());
+        writer.writeVarLong(datum.getExecuteCount());
+        writer.writeVarLong(zigzag(datum.code()));
+        writer.writeString(datum.location());
+        if (datum.score() == 0) {
+            writer.writeByte(TAG_NULL);
+        } else {
+            writer.writeByte(TAG_DOUBLE);
+            writer.writeLong(Double.doubleToLongBits(datum.score()));
+        }
+
+        if (datum.metaSize() == 0) {
+            writer.writeVarLong(0);
+        } else {
+            ByteWriter metaWriter = new ByteWriter(32);
+            CompactMeta compactMeta = datum.compactMeta();
+            if (compactMeta != null) {
+                encodeMeta(compactMeta, metaWriter);
+            } else {
+                encodeMeta(datum.meta(), metaWriter);
+            }
+            writer.writeVarLong(metaWriter.size);
+            writer.writeBytes(metaWriter.buffer, 0, metaWriter.size);
+        }
+        return writer.toByteArray();
+    }
+
+    public static CrawlDatum decode(String key, byte[] value) {
+        if (isJson(value)) {
+            String json = new String(value, UTF8);
+            return CrawlDatum.fromJsonArray(key, GsonUtils.parse(json).getAsJsonArray());
+        }
+        ByteReader reader = new ByteReader(value);
+        byte version = readVersion(reader);
+        CrawlDatum datum = new CrawlDatum();
+        datum.key(key);
+        datum.url(reader.readString());
+        datum.setStatus((int) reader.readVarLong());
+        datum.setExecuteTime(reader.readVarLong());
+        datum.setExecuteCount((int) reader.readVarLong());
+        datum.code((int) unzigzag(reader.readVarLong()));
+        datum.location(reader.readString());
+        if (version != VERSION_1 && reader.readByte() == TAG_DOUBLE) {
+            datum.score(Double.longBitsToDouble(reader.readLong()));
+        }
+        int metaLength = (int) reader.readVarLong();
+        if (metaLength > 0) {
+            decodeMeta(reader, reader.position + metaLength, datum.compactMeta());
+        }
+        return datum;
+    }
+
+    /**
+     * 只解码status，不创建CrawlDatum
+     */
+    public static int decodeStatus(byte[] value) {
+        if (isJson(value)) {
+            return decode(null, value).getStatus();
+        }
+        ByteReader reader = new ByteReader(value);
+        readVersion(reader);
+        reader.skipString();
+        return (int) reader.readVarLong();
+    }
+
+    private static byte readVersion(ByteReader reader) {
+        byte version = reader.readByte();
+        if (version != VERSION && version != VERSION_1) {
+            throw new IllegalArgumentException("unsupported CrawlDatum version: " + version);
+        }
+        return version;
+    }
+
+    /**
+     * 判断是否为旧版本的JSON格式
+     */
+    public static boolean isJson(byte[] value) {
+        return value.length > 0 && value[0] == '[';
+    }
+
+    static void encodeMeta(CompactMeta meta, ByteWriter writer) {
+        writer.writeVarLong(meta.size());
+        for (int i = 0; i < meta.size(); i++) {
+            writer.writeString(meta.key(i));
+            switch (meta.type(i)) {
+                case CompactMeta.TYPE_STRING:
+                    writer.writeByte(TAG_STRING);
+                    writer.writeString(meta.stringValue(i));
+                    break;
+                case CompactMeta.TYPE_LONG:
+                    writer.writeByte(TAG_LONG);
+                    writer.writeVarLong(zigzag(meta.longValue(i)));
+                    break;
+                case CompactMeta.TYPE_DOUBLE:
+                    writer.writeByte(TAG_DOUBLE);
+                    writer.writeLong(meta.longValue(i));
+                    break;
+                case CompactMeta.TYPE_BOOLEAN:
+                    writer.writeByte(meta.booleanValue(i) ? TAG_TRUE : TAG_FALSE);
+                    break;
+                default:
+                    JsonElement value = meta.jsonValue(i);
+                    if (value.isJsonNull()) {
+                        writer.writeByte(TAG_NULL);
+                    } else {
+                        writer.writeByte(TAG_JSON);
+                        writer.writeString(value.toString());
+                    }
+            }
+        }
+    }
+
+    static void encodeMeta(JsonObject meta, ByteWriter writer) {
+        writer.writeVarLong(meta.size());
+        for (Map.Entry<String, JsonElement> entry : meta.entrySet()) {
+            writer.writeString(entry.getKey());
+            JsonElement value = entry.getValue();
+            if (value == null || value.isJsonNull()) {
+                writer.writeByte(TAG_NULL);
+            } else if (value.isJsonPrimitive()) {
+                JsonPrimitive primitive = value.getAsJsonPrimitive();
+                if (primitive.isString()) {
+                    writer.writeByte(TAG_STRING);
+                    writer.writeString(primitive.getAsString());
+                } else if (primitive.isBoolean()) {
+                    writer.writeByte(primitive.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+                } else {
+                    Number number = primitive.getAsNumber();
+                    if (number instanceof Integer || number instanceof Long
+                            || number instanceof Short || number instanceof Byte) {
+                        writer.writeByte(TAG_LONG);
+                        writer.writeVarLong(zigzag(number.longValue()));
+                    } else if (number instanceof Double || number instanceof Float) {
+                        writer.writeByte(TAG_DOUBLE);
+                        writer.writeLong(Double.doubleToLongBits(number.doubleValue()));
+                    } else {
+                        writer.writeByte(TAG_NUMBER);
+                        writer.writeString(number.toString());
+                    }
+                }
+            } else {
+                writer.writeByte(TAG_JSON);
+                writer.writeString(value.toString());
+            }
+        }
+    }
+
+    static void decodeMeta(ByteReader reader, int end, CompactMeta meta) {
+        int count = (int) reader.readVarLong();
+        for (int i = 0; i < count; i++) {
+            String key = reader.readString();
+            byte tag = reader.readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    meta.putJson(key, JsonNull.INSTANCE);
+                    break;
+                case TAG_STRING:
+                    meta.putString(key, reader.readString());
+                    break;
+                case TAG_LONG:
+                    meta.putLong(key, unzigzag(reader.readVarLong()));
+                    break;
+                case TAG_DOUBLE:
+                    meta.putDouble(key, Double.longBitsToDouble(reader.readLong()));
+                    break;
+                case TAG_TRUE:
+                    meta.putBoolean(key, true);
+                    break;
+                case TAG_FALSE:
+                    meta.putBoolean(key, false);
+                    break;
+                case TAG_NUMBER:
+                case TAG_JSON:
+                    meta.putJson(key, GsonUtils.parse(reader.readString()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown meta tag: " + tag);
+            }
+        }
+        reader.position = end;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static class ByteWriter {
+
+        byte[] buffer;
+        int size = 0;
+
+        ByteWriter(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int i = 7; i >= 0; i--) {
+                buffer[size++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        // 长度加1，0表示null
+        void writeString(String str) {
+            if (str == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = str.getBytes(UTF8);
+            writeVarLong(bytes.length + 1);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    static class ByteReader {
+
+        byte[] buffer;
+        int position = 0;
+
+        ByteReader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buffer[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        long readLong() {
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | (buffer[position++] & 0xFF);
+            }
+            return result;
+        }
+
+        void skipString() {
+            int length = (int) readVarLong();
+            if (length > 0) {
+                position += length - 1;
+            }
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            length--;
+            String str = new String(buffer, position, length, UTF8);
+            position += length;
+            return str;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+
+import java.util.List;
+
+/**
+ * 流式链接抽取，顺序扫描HTML中的标签，不构建DOM树
+ * 结果与Jsoup解析后select("a[href]").eachAttr("abs:href")、
+ * select("*[src]").eachAttr("abs:src")一致：
+ * 属性值解码实体后按baseUri转换为绝对地址，转换失败的链接被忽略，
+ * 与Jsoup相同，第一个有效的base标签对它前后的所有链接都生效，因此扫描结束后再统一转换，
+ * 注释和script、style等原始文本元素中的内容不会被当作标签
+ *
+ * @author hu
+ */
+public class LinkExtractor {
+
+    // 内容为原始文本的元素，内部的"<"不是标签
+    private static final String[] RAW_TEXT_TAGS = {
+            "script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes"
+    };
+
+    protected final String html;
+    protected String baseUri;
+    private boolean baseUriSet = false;
+    protected final int length;
+    protected int pos = 0;
+
+    // 当前标签的属性
+    private String tagName;
+    private String href;
+    private String src;
+
+    protected LinkExtractor(String html, String baseUri) {
+        this.html = html;
+        this.baseUri = baseUri == null ? "" : baseUri;
+        this.length = html.length();
+    }
+
+    /**
+     * 抽取html中的链接
+     *
+     * @param html HTML源码
+     * @param baseUri 用于转换相对地址的URL
+     * @param hrefs 保存a标签的href
+     * @param srcs 保存所有标签的src，为null时不抽取src
+     */
+    public static void extract(String html, String baseUri, List<String> hrefs, List<String> srcs) {
+        new LinkExtractor(html, baseUri).run(hrefs, srcs);
+    }
+
+    protected void run(List<String> hrefs, List<String> srcs) {
+        int hrefStart = hrefs.size();
+        int srcStart = srcs == null ? 0 : srcs.size();
+        scan(hrefs, srcs);
+        resolve(hrefs, hrefStart);
+        if (srcs != null) {
+            resolve(srcs, srcStart);
+        }
+    }
+
+    /**
+     * 将from之后的链接原地转换为绝对地址，删除转换失败的链接
+     */
+    private void resolve(List<String> links, int from) {
+        int kept = from;
+        for (int i = from; i < links.size(); i++) {
+            String resolved = StringUtil.resolve(baseUri, links.get(i));
+            if (resolved.length() > 0) {
+                links.set(kept++, resolved);
+            }
+        }
+        while (links.size() > kept) {
+            links.remove(links.size() - 1);
+        }
+    }
+
+    private void scan(List<String> hrefs, List<String> srcs) {
+        while (pos < length) {
+            int lt = html.indexOf('<', pos);
+            if (lt < 0 || lt + 1 >= length) {
+                return;
+            }
+            pos = lt + 1;
+            char c = html.charAt(pos);
+            if (c == '!') {
+                skipMarkupDeclaration();
+            } else if (c == '/' || c == '?') {
+                // 结束标签和处理指令
+                skipTo('>');
+            } else if (isLetter(c)) {
+                readStartTag();
+                if (tagName.equals("base") && !baseUriSet && href != null) {
+                    String resolved = StringUtil.resolve(baseUri, href);
+                    if (resolved.length() > 0) {
+                        baseUri = resolved;
+                        baseUriSet = true;
+                    }
+                }
+                if (href != null && tagName.equals("a")) {
+                    hrefs.add(href);
+                }
+                if (src != null && srcs != null) {
+                    srcs.add(src);
+                }
+                if (isRawText(tagName)) {
+                    skipRawText(tagName);
+                }
+            }
+        }
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isRawText(String tagName) {
+        for (String rawTextTag : RAW_TEXT_TAGS) {
+            if (rawTextTag.equals(tagName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipTo(char target) {
+        int index = html.indexOf(target, pos);
+        pos = index < 0 ? length : index + 1;
+    }
+
+    private void skipMarkupDeclaration() {
+        if (html.startsWith("!--", pos)) {
+            int end = html.indexOf("-->", pos + 3);
+            pos = end < 0 ? length : end + 3;
+        } else {
+            skipTo('>');
+        }
+    }
+
+    /**
+     * 跳过原始文本元素的内容，直到对应的结束标签
+     */
+    private void skipRawText(String name) {
+        while (pos < length) {
+            int lt = html.indexOf("</", pos);
+            if (lt < 0) {
+                pos = length;
+                return;
+            }
+            int nameEnd = lt + 2 + name.length();
+            if (html.regionMatches(true, lt + 2, name, 0, name.length())
+                    && (nameEnd >= length || isSpace(html.charAt(nameEnd))
+                    || html.charAt(nameEnd) == '>' || html.charAt(nameEnd) == '/')) {
+                pos = lt;
+                return;
+            }
+            pos = lt + 2;
+        }
+    }
+
+    /**
+     * 读取开始标签的名称和href、src属性，pos停在标签结束之后
+     */
+    private void readStartTag() {
+        href = null;
+        src = null;
+        int start = pos;
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (isSpace(c) || c == '/' || c == '>') {
+                break;
+            }
+            pos++;
+        }
+        tagName = html.substring(start, pos).toLowerCase();
+
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (c == '>') {
+                pos++;
+                return;
+            }
+            if (isSpace(c) || c == '/') {
+                pos++;
+                continue;
+            }
+            int nameStart = pos;
+            while (pos < length) {
+                c = html.charAt(pos);
+                if (isSpace(c) || c == '/' || c == '>' || (c == '=' && pos > nameStart)) {
+                    break;
+                }
+                pos++;
+            }
+            int nameEnd = pos;
+            while (pos < length && isSpace(html.charAt(pos))) {
+                pos++;
+            }
+            String value = "";
+            if (pos < length && html.charAt(pos) == '=') {
+                pos++;
+                while (pos < length && isSpace(html.charAt(pos))) {
+                    pos++;
+                }
+                value = readAttributeValue();
+            }
+            int nameLength = nameEnd - nameStart;
+            // 同名属性只保留第一个
+            if (nameLength == 4 && href == null && html.regionMatches(true, nameStart, "href", 0, 4)) {
+                href = value;
+            } else if (nameLength == 3 && src == null && html.regionMatches(true, nameStart, "src", 0, 3)) {
+                src = value;
+            }
+        }
+    }
+
+    private String readAttributeValue() {
+        if (pos >= length) {
+            return "";
+        }
+        char quote = html.charAt(pos);
+        String value;
+        if (quote == '"' || quote == '\'') {
+            int end = html.indexOf(quote, pos + 1);
+            if (end < 0) {
+                end = length;
+            }
+            value = html.substring(pos + 1, end);
+            pos = Math.min(end + 1, length);
+        } else {
+            int start = pos;
+            while (pos < length) {
+                char c = html.charAt(pos);
+                if (isSpace(c) || c == '>') {
+                    break;
+                }
+                pos++;
+            }
+            value = html.substring(start, pos);
+        }
+        if (value.indexOf('&') >= 0) {
+            value = Parser.unescapeEntities(value, true);
+        }
+        return value;
+    }
+}
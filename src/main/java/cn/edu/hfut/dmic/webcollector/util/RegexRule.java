@@ -21,8 +21,10 @@ package cn.edu.hfut.dmic.webcollector.util;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
+ * URL正则规则，规则在添加时预编译
  *
  * @author hu
  */
@@ -49,8 +51,16 @@ public class RegexRule {
         return positive.isEmpty();
     }
 
-    private ArrayList<String> positive = new ArrayList<String>();
-    private ArrayList<String> negative = new ArrayList<String>();
+    private ArrayList<Pattern> positive = new ArrayList<Pattern>();
+    private ArrayList<Pattern> negative = new ArrayList<Pattern>();
+
+    // 是否将所有正正则合并为一个(?:a)|(?:b)形式的正则，只需匹配一次
+    private boolean combinePositive = false;
+    // 合并后的正正则，规则变化时置为null，使用时重新生成
+    private volatile Pattern combinedPositive = null;
+    // 正正则中含有反向引用时不能合并
+    private boolean combinable = true;
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
 
   
     
@@ -63,6 +73,7 @@ public class RegexRule {
      * 例如a.*c是一条正正则，正则的内容为a.*c
      * @param rule 正则规则
      * @return 自身
+     * @throws PatternSyntaxException 正则语法错误，在添加时抛出
      */
     public RegexRule addRule(String rule) {
         if (rule.length() == 0) {
@@ -86,9 +97,14 @@ public class RegexRule {
      * 添加一个正正则规则
      * @param positiveregex
      * @return 自身
+     * @throws PatternSyntaxException 正则语法错误
      */
     public RegexRule addPositive(String positiveregex) {
-        positive.add(positiveregex);
+        positive.add(Pattern.compile(positiveregex));
+        if (BACK_REFERENCE.matcher(positiveregex).find()) {
+            combinable = false;
+        }
+        combinedPositive = null;
         return this;
     }
 
@@ -97,12 +113,51 @@ public class RegexRule {
      * 添加一个反正则规则
      * @param negativeregex
      * @return 自身
+     * @throws PatternSyntaxException 正则语法错误
      */
     public RegexRule addNegative(String negativeregex) {
-        negative.add(negativeregex);
+        negative.add(Pattern.compile(negativeregex));
+        return this;
+    }
+
+    public boolean isCombinePositive() {
+        return combinePositive;
+    }
+
+    /**
+     * 设置是否将所有正正则合并为一个正则匹配
+     * 正正则较多时可以减少匹配次数，含有反向引用的规则无法合并，此时仍逐条匹配
+     * @param combinePositive 是否合并
+     * @return 自身
+     */
+    public RegexRule setCombinePositive(boolean combinePositive) {
+        this.combinePositive = combinePositive;
+        combinedPositive = null;
         return this;
     }
 
+    private Pattern combinedPositive() {
+        Pattern combined = combinedPositive;
+        if (combined == null) {
+            StringBuilder sb = new StringBuilder();
+            for (Pattern pattern : positive) {
+                if (sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append("(?:").append(pattern.pattern()).append(')');
+            }
+            try {
+                combined = Pattern.compile(sb.toString());
+            } catch (PatternSyntaxException ex) {
+                // 例如多条规则使用了同名的命名分组
+                combinable = false;
+                return null;
+            }
+            combinedPositive = combined;
+        }
+        return combined;
+    }
+
    
     /**
      * 判断输入字符串是否符合正则规则
@@ -111,24 +166,25 @@ public class RegexRule {
      */
     public boolean satisfy(String str) {
 
-        int state = 0;
-        for (String nregex : negative) {
-            if (Pattern.matches(nregex, str)) {
+        for (int i = 0; i < negative.size(); i++) {
+            if (negative.get(i).matcher(str).matches()) {
                 return false;
             }
         }
 
-        int count = 0;
-        for (String pregex : positive) {
-            if (Pattern.matches(pregex, str)) {
-                count++;
+        if (combinePositive && combinable && positive.size() > 1) {
+            Pattern combined = combinedPositive();
+            if (combined != null) {
+                return combined.matcher(str).matches();
             }
         }
-        if (count == 0) {
-            return false;
-        } else {
-            return true;
+
+        for (int i = 0; i < positive.size(); i++) {
+            if (positive.get(i).matcher(str).matches()) {
+                return true;
+            }
         }
+        return false;
 
     }
 }
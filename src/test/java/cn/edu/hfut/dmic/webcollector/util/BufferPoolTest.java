@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ * @author hu
+ */
+public class BufferPoolTest {
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+        byte[] data = randomBytes(100);
+        // 实际长度小于Content-Length
+        assertArrayEquals(data, BufferPool.readFully(new ByteArrayInputStream(data), 200, 0));
+        // 实际长度等于Content-Length
+        assertArrayEquals(data, BufferPool.readFully(new ByteArrayInputStream(data), 100, 0));
+
+        // 实际长度大于Content-Length时继续读取
+        byte[] large = randomBytes(BufferPool.CHUNK_SIZE * 2 + 5);
+        assertArrayEquals(large, BufferPool.readFully(new ByteArrayInputStream(large), 10, 0));
+        assertArrayEquals(Arrays.copyOf(large, 50), BufferPool.readFully(new ByteArrayInputStream(large), 10, 50));
+    }
+
+    @Test
+    public void testUnknownLength() throws Exception {
+        assertEquals(0, BufferPool.readFully(new ByteArrayInputStream(new byte[0]), -1, 0).length);
+        byte[] data = randomBytes(BufferPool.CHUNK_SIZE * 3 + 17);
+        assertArrayEquals(data, BufferPool.readFully(new ByteArrayInputStream(data), -1, 0));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        byte[] data = randomBytes(1000);
+
+        // Content-Length超过maxSize时只读取maxSize，剩余数据不读取
+        ByteArrayInputStream is = new ByteArrayInputStream(data);
+        assertArrayEquals(Arrays.copyOf(data, 100), BufferPool.readFully(is, 1000, 100));
+        assertEquals(900, is.available());
+
+        is = new ByteArrayInputStream(data);
+        assertArrayEquals(Arrays.copyOf(data, 100), BufferPool.readFully(is, -1, 100));
+        assertEquals(900, is.available());
+
+        // 长度恰好为maxSize
+        is = new ByteArrayInputStream(data);
+        assertArrayEquals(data, BufferPool.readFully(is, -1, 1000));
+        assertEquals(-1, is.read());
+    }
+
+    @Test
+    public void testChunksReturnedToPool() throws Exception {
+        while (BufferPool.getPooledCount() > 0) {
+            BufferPool.acquire();
+        }
+        byte[] data = randomBytes(BufferPool.CHUNK_SIZE * 3 + 17);
+        BufferPool.readFully(new ByteArrayInputStream(data), -1, 0);
+        assertEquals(4, BufferPool.getPooledCount());
+
+        // 再次读取时复用池中的缓冲块
+        BufferPool.readFully(new ByteArrayInputStream(data), -1, 0);
+        assertEquals(4, BufferPool.getPooledCount());
+
+        // 长度不符的数组不放回池中
+        BufferPool.release(new byte[10]);
+        assertEquals(4, BufferPool.getPooledCount());
+    }
+}
@@ -48,6 +48,16 @@ public class CharsetDetectorTest {
         assertThat(CharsetDetector.guessEncoding(encode("Windows-1252", "hello")), is(DEFAULT_ENCODING));
     }
 
+    @Test
+    public void testGuessEncodingByMeta() throws Exception {
+        assertThat(CharsetDetector.guessEncoding(encode("GBK",
+                "<html><head><META http-equiv=\"Content-Type\" content=\"text/html; charset=gbk\"></head><body>你好</body></html>")), is("gbk"));
+        assertThat(CharsetDetector.guessEncoding(encode("UTF-8",
+                "<html><head><meta charset='utf-8'/></head><body>привет</body></html>")), is("utf-8"));
+        assertThat(CharsetDetector.guessEncoding(encode("KOI8-R", "привет"), "text/html; charset=GB2312"), is("GB2312"));
+        assertThat(CharsetDetector.guessEncoding(encode("KOI8-R", "привет"), "text/html; charset=unknown"), is("KOI8-R"));
+    }
+
     private byte[] encode(String charset, String text) {
         return Charset.forName(charset).encode(text).array();
     }
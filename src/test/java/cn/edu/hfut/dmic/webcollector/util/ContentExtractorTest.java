@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import cn.edu.hfut.dmic.contentextractor.ContentExtractor;
+import cn.edu.hfut.dmic.contentextractor.News;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import cn.edu.hfut.dmic.webcollector.model.Page;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 正文抽取的回归测试，期望结果与重写打分之前的实现一致
+ *
+ * @author hu
+ */
+public class ContentExtractorTest {
+
+    private static byte[] readFixture(String name) throws Exception {
+        InputStream is = ContentExtractorTest.class.getResourceAsStream("/contentextractor/" + name);
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static String readHtml(String name) throws Exception {
+        return new String(readFixture(name), "utf-8");
+    }
+
+    private static News extract(String name) throws Exception {
+        return ContentExtractor.getNewsByHtml(readHtml(name), "http://example.com/" + name);
+    }
+
+    @Test
+    public void testNews() throws Exception {
+        News news = extract("news.html");
+        Element contentElement = news.getContentElement();
+        assertEquals("div", contentElement.tagName());
+        assertEquals("article", contentElement.className());
+        assertEquals("Coastal city opens new harbour bridge", news.getTitle());
+        assertEquals("2018-06-21", news.getTime());
+        assertEquals("http://example.com/news.html", news.getUrl());
+        assertTrue(news.getContent().startsWith("The long awaited harbour bridge opened"));
+        assertTrue(news.getContent().endsWith("a modest toll that will be reviewed annually."));
+        assertFalse(news.getContent().contains("injected advert"));
+    }
+
+    @Test
+    public void testBlog() throws Exception {
+        News news = extract("blog.html");
+        Element contentElement = news.getContentElement();
+        assertEquals("section", contentElement.tagName());
+        assertEquals("post", contentElement.id());
+        assertEquals("Notes on building a small crawler", news.getTitle());
+        assertEquals("2019-03-02", news.getTime());
+        assertTrue(news.getContent().startsWith("Notes on building a small crawler 2019-03-02 Last month"));
+        assertFalse(news.getContent().contains("reader1"));
+    }
+
+    @Test
+    public void testChinese() throws Exception {
+        News news = extract("chinese.html");
+        Element contentElement = news.getContentElement();
+        assertEquals("div", contentElement.tagName());
+        assertEquals("text", contentElement.className());
+        assertEquals("合肥工业大学举办数据挖掘学术报告会", news.getTitle());
+        assertEquals("2017-11-08", news.getTime());
+        assertTrue(news.getContent().startsWith("11月7日下午"));
+        assertFalse(news.getContent().contains("图书馆"));
+    }
+
+    @Test
+    public void testNonDestructive() throws Exception {
+        for (String name : new String[]{"news.html", "blog.html", "chinese.html"}) {
+            String html = readHtml(name);
+            Document doc = Jsoup.parse(html, "http://example.com/" + name);
+            String before = doc.outerHtml();
+            int scripts = doc.select("script,style,noscript,iframe").size();
+            assertTrue(scripts > 0);
+
+            News news = ContentExtractor.getNewsByDoc(doc, false);
+            // doc没有被修改
+            assertEquals(before, doc.outerHtml());
+            assertEquals(scripts, doc.select("script,style,noscript,iframe").size());
+
+            News cleaned = ContentExtractor.getNewsByHtml(html, "http://example.com/" + name);
+            assertEquals(cleaned.getContent(), news.getContent());
+            assertEquals(cleaned.getTitle(), news.getTitle());
+            assertEquals(cleaned.getTime(), news.getTime());
+            assertEquals(cleaned.getUrl(), news.getUrl());
+            assertEquals(cleaned.getContentElement().cssSelector(), news.getContentElement().cssSelector());
+        }
+    }
+
+    @Test
+    public void testPageNews() throws Exception {
+        Page page = new Page(new CrawlDatum("http://example.com/news.html"),
+                "text/html; charset=utf-8", readFixture("news.html"));
+        assertFalse(page.hasDoc());
+        News news = page.news();
+        // 抽取时解析的DOM树缓存在Page中，结果也被缓存
+        assertTrue(page.hasDoc());
+        Document doc = page.doc();
+        assertSame(news, page.news());
+        assertSame(doc, page.doc());
+        assertEquals("Coastal city opens new harbour bridge", news.getTitle());
+        // doc()仍然完整，可以继续用于其他解析
+        assertFalse(doc.select("script").isEmpty());
+        assertEquals(11, doc.select("a[href]").size());
+    }
+}
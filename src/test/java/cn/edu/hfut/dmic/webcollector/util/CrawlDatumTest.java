@@ -18,6 +18,7 @@
 package cn.edu.hfut.dmic.webcollector.util;
 
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import com.google.gson.JsonArray;
 import java.util.regex.Pattern;
 
 import static org.junit.Assert.*;
@@ -41,4 +42,50 @@ public class CrawlDatumTest {
         CrawlDatum datum=new CrawlDatum(testUrl).key(key);
         assertEquals(key, datum.key());
     }
+
+    @Test
+    public void testCodec() throws Exception {
+        JsonArray tags = new JsonArray();
+        tags.add("a");
+        CrawlDatum datum = new CrawlDatum(testUrl, "list")
+                .meta("depth", 3)
+                .meta("score", 0.5)
+                .meta("big", 1L << 40)
+                .meta("flag", false)
+                .meta("title", "中文标题")
+                .code(-1)
+                .location("http://datahref.com/中文")
+                .score(0.25);
+        datum.meta().add("tags", tags);
+        datum.setStatus(CrawlDatum.STATUS_DB_SUCCESS);
+        datum.setExecuteCount(2);
+
+        byte[] bytes = CrawlDatumCodec.encode(datum);
+        assertFalse(CrawlDatumCodec.isJson(bytes));
+        CrawlDatum decoded = CrawlDatumCodec.decode(testUrl, bytes);
+        assertEquals(testUrl, decoded.url());
+        assertEquals(datum.getStatus(), decoded.getStatus());
+        assertEquals(datum.getExecuteTime(), decoded.getExecuteTime());
+        assertEquals(2, decoded.getExecuteCount());
+        assertEquals(-1, decoded.code());
+        assertEquals(datum.location(), decoded.location());
+        assertEquals(0.25, decoded.score(), 0);
+        assertEquals(0, CrawlDatumCodec.decode(testUrl, CrawlDatumCodec.encode(new CrawlDatum(testUrl))).score(), 0);
+        assertEquals(CrawlDatum.STATUS_DB_SUCCESS, CrawlDatumCodec.decodeStatus(bytes));
+        assertEquals("list", decoded.type());
+        assertEquals(3, decoded.metaAsInt("depth"));
+        assertEquals(0.5, decoded.metaAsDouble("score"), 0);
+        assertEquals(1L << 40, decoded.metaAsLong("big"));
+        assertFalse(decoded.metaAsBoolean("flag"));
+        assertEquals("中文标题", decoded.meta("title"));
+        assertEquals(tags, decoded.meta().get("tags"));
+
+        // 兼容旧版本的JSON格式
+        byte[] json = datum.asJsonArray().getBytes("utf-8");
+        assertTrue(CrawlDatumCodec.isJson(json));
+        CrawlDatum fromJson = CrawlDatumCodec.decode(testUrl, json);
+        assertEquals(testUrl, fromJson.url());
+        assertEquals(3, fromJson.metaAsInt("depth"));
+        assertEquals(datum.getExecuteTime(), fromJson.getExecuteTime());
+    }
 }
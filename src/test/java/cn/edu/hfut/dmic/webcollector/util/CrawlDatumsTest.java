@@ -19,9 +19,11 @@ package cn.edu.hfut.dmic.webcollector.util;
 
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
+import cn.edu.hfut.dmic.webcollector.model.Links;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.function.Predicate;
 
 import static org.junit.Assert.assertEquals;
 
@@ -79,4 +81,27 @@ public class CrawlDatumsTest {
         assertEquals(1 + urlList.size(), datums.size());
 
     }
+
+    @Test
+    public void testFilter(){
+        Links links = new Links(100);
+        for(int i = 0;i<100;i++){
+            links.add("https://www.google.com/" + (i % 2 == 0 ? "a/" : "b/") + i);
+        }
+        links.filterByRegex("https://www.google.com/a/.*");
+        assertEquals(50, links.size());
+        assertEquals("https://www.google.com/a/0", links.get(0));
+        assertEquals("https://www.google.com/a/98", links.get(49));
+
+        CrawlDatums datums = new CrawlDatums(links, "list");
+        assertEquals(50, datums.size());
+        assertEquals("list", datums.get(49).type());
+        datums.removeIf(new Predicate<CrawlDatum>() {
+            @Override
+            public boolean test(CrawlDatum datum) {
+                return datum.url().endsWith("0");
+            }
+        });
+        assertEquals(40, datums.size());
+    }
 }
@@ -1,17 +1,28 @@
 package cn.edu.hfut.dmic.webcollector.util;
 
+import cn.edu.hfut.dmic.webcollector.conf.Configuration;
 import cn.edu.hfut.dmic.webcollector.crawldb.DBManager;
+import cn.edu.hfut.dmic.webcollector.crawldb.DatumScorer;
 import cn.edu.hfut.dmic.webcollector.crawldb.Generator;
+import cn.edu.hfut.dmic.webcollector.crawldb.StatusGeneratorFilter;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
 import cn.edu.hfut.dmic.webcollector.plugin.berkeley.BerkeleyDBManager;
 import cn.edu.hfut.dmic.webcollector.plugin.rocks.RocksDBManager;
+import cn.edu.hfut.dmic.webcollector.plugin.rocks.RocksDBUtils;
+import cn.edu.hfut.dmic.webcollector.plugin.ram.RamDB;
+import cn.edu.hfut.dmic.webcollector.plugin.ram.RamDBManager;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class DBManagerTest {
 
@@ -61,5 +72,248 @@ public class DBManagerTest {
         testInject(dbManager);
     }
 
+    @Test
+    public void testRocksDBMerge() throws Exception {
+        RocksDBManager dbManager = new RocksDBManager(tempCrawlPath);
+        try {
+            dbManager.open();
+            dbManager.inject("https://www.google.com/");
+            dbManager.initSegmentWriter();
+            CrawlDatum fetched = new CrawlDatum("https://www.google.com/");
+            fetched.setStatus(CrawlDatum.STATUS_DB_SUCCESS);
+            dbManager.writeFetchSegment(fetched);
+            CrawlDatums links = new CrawlDatums();
+            links.add("https://www.google.com/").add("https://www.google.com/a");
+            dbManager.writeParseSegment(links);
+            dbManager.closeSegmentWriter();
+            // 停止后仍未结束的任务不能再写入segment
+            try {
+                dbManager.writeFetchSegment(fetched);
+                fail();
+            } catch (IllegalStateException ex) {
+            }
+            dbManager.close();
+
+            // 重新打开后合并，fetch/link应在合并后被清空
+            dbManager.open();
+            dbManager.merge();
+            dbManager.merge();
+            Generator generator = dbManager.createGenerator(null);
+            int count = 0;
+            CrawlDatum datum;
+            while ((datum = generator.next()) != null) {
+                if (datum.url().equals("https://www.google.com/")) {
+                    assertEquals(CrawlDatum.STATUS_DB_SUCCESS, datum.getStatus());
+                }
+                count++;
+            }
+            generator.close();
+            assertEquals(2, count);
+            dbManager.close();
+
+            // list()临时打开的数据库结束后关闭，不占用LOCK
+            dbManager.list();
+            dbManager.open();
+            dbManager.close();
+        } finally {
+            dbManager.clear();
+        }
+    }
+
+    @Test
+    public void testRocksDBMergeKeepsExistingDatums() throws Exception {
+        RocksDBManager dbManager = new RocksDBManager(tempCrawlPath);
+        try {
+            dbManager.open();
+            CrawlDatums injected = new CrawlDatums();
+            for (int i = 0; i < 100; i++) {
+                CrawlDatum datum = new CrawlDatum(String.format("http://a.com/%03d", i));
+                datum.setStatus(CrawlDatum.STATUS_DB_SUCCESS);
+                injected.add(datum);
+            }
+            dbManager.inject(injected);
+
+            dbManager.initSegmentWriter();
+            CrawlDatums links = new CrawlDatums();
+            // 已存在的链接之间间隔较大，覆盖顺序前进和seek两种情况
+            for (int i = 0; i < 100; i += 30) {
+                links.add(String.format("http://a.com/%03d", i));
+                links.add(String.format("http://a.com/%03d_new", i));
+            }
+            links.add("http://0.com/");
+            links.add("http://b.com/");
+            dbManager.writeParseSegment(links);
+            dbManager.closeSegmentWriter();
+            dbManager.merge();
+
+            Generator generator = dbManager.createGenerator(null);
+            int count = 0;
+            CrawlDatum datum;
+            while ((datum = generator.next()) != null) {
+                boolean isNew = datum.url().endsWith("_new") || !datum.url().startsWith("http://a.com/");
+                assertEquals(isNew ? CrawlDatum.STATUS_DB_UNEXECUTED : CrawlDatum.STATUS_DB_SUCCESS, datum.getStatus());
+                count++;
+            }
+            generator.close();
+            assertEquals(100 + 4 + 2, count);
+            dbManager.close();
+        } finally {
+            dbManager.clear();
+        }
+    }
+
+    public void testInjectIfAbsent(DBManager dbManager) throws Exception {
+        try {
+            dbManager.open();
+            dbManager.inject("https://www.google.com/");
+            assertFalse(dbManager.injectIfAbsent(new CrawlDatum("https://www.google.com/")));
+            assertTrue(dbManager.injectIfAbsent(new CrawlDatum("https://www.google.com/a")));
+            assertFalse(dbManager.injectIfAbsent(new CrawlDatum("https://www.google.com/a")));
+
+            Generator generator = dbManager.createGenerator(null);
+            int count = 0;
+            while (generator.next() != null) {
+                count++;
+            }
+            generator.close();
+            assertEquals(2, count);
+            dbManager.close();
+        } finally {
+            dbManager.clear();
+        }
+    }
+
+    @Test
+    public void testInjectIfAbsent() throws Exception {
+        testInjectIfAbsent(new RocksDBManager(tempCrawlPath));
+        testInjectIfAbsent(new BerkeleyDBManager(tempCrawlPath));
+        testInjectIfAbsent(new RamDBManager(new RamDB()));
+    }
 
+    private int countGenerated(DBManager dbManager) throws Exception {
+        Generator generator = dbManager.createGenerator(new StatusGeneratorFilter());
+        int count = 0;
+        CrawlDatum datum;
+        while ((datum = generator.next()) != null) {
+            assertTrue(datum.getStatus() != CrawlDatum.STATUS_DB_SUCCESS);
+            count++;
+        }
+        generator.close();
+        return count;
+    }
+
+    @Test
+    public void testRocksDBFrontier() throws Exception {
+        RocksDBManager dbManager = new RocksDBManager(tempCrawlPath);
+        try {
+            dbManager.open();
+            dbManager.inject(new CrawlDatums().add("http://a.com/1").add("http://a.com/2").add("http://a.com/3"));
+            assertEquals(3, countGenerated(dbManager));
+
+            dbManager.initSegmentWriter();
+            CrawlDatum success = new CrawlDatum("http://a.com/1");
+            success.setStatus(CrawlDatum.STATUS_DB_SUCCESS);
+            dbManager.writeFetchSegment(success);
+            CrawlDatum failed = new CrawlDatum("http://a.com/2");
+            failed.setStatus(CrawlDatum.STATUS_DB_FAILED);
+            dbManager.writeFetchSegment(failed);
+            dbManager.writeParseSegment(new CrawlDatums().add("http://a.com/1").add("http://a.com/4"));
+            dbManager.closeSegmentWriter();
+            dbManager.merge();
+            assertEquals(3, countGenerated(dbManager));
+            dbManager.close();
+
+            // 旧版本的crawldb没有frontier，打开时重建
+            new File(RocksDBUtils.getFrontierRebuildPath(tempCrawlPath)).createNewFile();
+            dbManager.open();
+            assertFalse(new File(RocksDBUtils.getFrontierRebuildPath(tempCrawlPath)).exists());
+            assertEquals(3, countGenerated(dbManager));
+            dbManager.close();
+        } finally {
+            dbManager.clear();
+        }
+    }
+
+    @Test
+    public void testPriorityGenerator() throws Exception {
+        RamDBManager dbManager = new RamDBManager(new RamDB());
+        dbManager.setConf(Configuration.copyDefault().setTopN(3));
+        for (int i = 0; i < 10; i++) {
+            CrawlDatum datum = new CrawlDatum("http://a.com/" + i).score(i % 5);
+            dbManager.inject(datum);
+        }
+        CrawlDatum success = new CrawlDatum("http://a.com/success").score(100);
+        success.setStatus(CrawlDatum.STATUS_DB_SUCCESS);
+        dbManager.inject(success);
+
+        Generator generator = dbManager.createGenerator(new StatusGeneratorFilter(), new DatumScorer());
+        double[] expectedScores = {4, 4, 3};
+        for (double expectedScore : expectedScores) {
+            assertEquals(expectedScore, generator.next().score(), 0);
+        }
+        assertNull(generator.next());
+        assertEquals(3, generator.getTotalGenerate());
+        generator.close();
+    }
+
+    @Test
+    public void testHostInterleavedGenerator() throws Exception {
+        RocksDBManager dbManager = new RocksDBManager(tempCrawlPath);
+        dbManager.setConf(Configuration.copyDefault().setHostInterleaveWindow(100));
+        try {
+            dbManager.open();
+            String[] hosts = {"http://a.com/", "http://b.com/", "http://c.com/"};
+            for (String host : hosts) {
+                for (int i = 0; i < 4; i++) {
+                    dbManager.inject(host + i);
+                }
+            }
+            Generator generator = dbManager.createGenerator(new StatusGeneratorFilter(), null);
+            for (int i = 0; i < 12; i++) {
+                // crawldb中同一host的URL连续排列，轮流生成后依次来自a、b、c
+                assertTrue(generator.next().url().startsWith(hosts[i % hosts.length]));
+            }
+            assertNull(generator.next());
+            generator.close();
+            dbManager.close();
+        } finally {
+            dbManager.clear();
+        }
+    }
+
+    @Test
+    public void testRocksPartitionedGenerator() throws Exception {
+        RocksDBManager dbManager = new RocksDBManager(tempCrawlPath);
+        dbManager.setConf(Configuration.copyDefault().setRocksGenerateThreads(4));
+        try {
+            dbManager.open();
+            HashSet<String> injected = new HashSet<String>();
+            for (int i = 0; i < 1000; i++) {
+                String url = (i % 2 == 0 ? "http://" : "https://") + "host" + (i % 7) + ".com/" + i;
+                dbManager.inject(url);
+                injected.add(url);
+            }
+            HashSet<String> generated = new HashSet<String>();
+            Generator generator = dbManager.createGenerator(new StatusGeneratorFilter());
+            CrawlDatum datum;
+            while ((datum = generator.next()) != null) {
+                assertTrue(generated.add(datum.url()));
+            }
+            generator.close();
+            assertEquals(injected, generated);
+
+            dbManager.setConf(Configuration.copyDefault().setRocksGenerateThreads(4).setTopN(100));
+            generated.clear();
+            generator = dbManager.createGenerator(new StatusGeneratorFilter());
+            while ((datum = generator.next()) != null) {
+                assertTrue(generated.add(datum.url()));
+            }
+            assertEquals(100, generated.size());
+            assertEquals(100, generator.getTotalGenerate());
+            generator.close();
+            dbManager.close();
+        } finally {
+            dbManager.clear();
+        }
+    }
 }
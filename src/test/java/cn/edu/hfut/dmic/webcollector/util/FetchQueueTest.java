@@ -0,0 +1,147 @@
+package cn.edu.hfut.dmic.webcollector.util;
+
+import cn.edu.hfut.dmic.webcollector.fetcher.FetchQueue;
+import cn.edu.hfut.dmic.webcollector.fetcher.Fetcher;
+import cn.edu.hfut.dmic.webcollector.fetcher.HostFetchQueue;
+import cn.edu.hfut.dmic.webcollector.fetcher.LockFreeFetchQueue;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FetchQueueTest {
+
+    @Test
+    public void testPutAndTake() throws Exception {
+        FetchQueue queue = new LockFreeFetchQueue(3);
+        for (int i = 0; i < 3; i++) {
+            queue.put(new Fetcher.FetchItem(new CrawlDatum("http://a.com/" + i)));
+        }
+        assertEquals(3, queue.getSize());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("http://a.com/" + i, queue.take().datum.url());
+        }
+        assertNull(queue.poll());
+        assertEquals(3, queue.getTotalSize());
+    }
+
+    @Test
+    public void testFinishWakesUpConsumers() throws Exception {
+        final FetchQueue queue = new LockFreeFetchQueue(4);
+        queue.put(new Fetcher.FetchItem(new CrawlDatum("http://a.com/")));
+        final CountDownLatch endOfStream = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (queue.take() != null) {
+                        }
+                        endOfStream.countDown();
+                    } catch (InterruptedException ex) {
+                    }
+                }
+            }.start();
+        }
+        queue.finish();
+        assertTrue(endOfStream.await(5, TimeUnit.SECONDS));
+        assertEquals(0, queue.getSize());
+
+        queue.clear();
+        assertFalse(queue.isFinished());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final FetchQueue queue = new LockFreeFetchQueue(16);
+        final int producers = 4;
+        final int consumers = 8;
+        final int itemsPerProducer = 5000;
+        final ConcurrentHashMap<String, Boolean> taken = new ConcurrentHashMap<String, Boolean>();
+        final CountDownLatch consumed = new CountDownLatch(producers * itemsPerProducer);
+
+        for (int p = 0; p < producers; p++) {
+            final int producerId = p;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < itemsPerProducer; i++) {
+                            queue.put(new Fetcher.FetchItem(new CrawlDatum("http://a.com/" + producerId + "/" + i)));
+                        }
+                    } catch (InterruptedException ex) {
+                    }
+                }
+            }.start();
+        }
+
+        Thread[] consumerThreads = new Thread[consumers];
+        for (int c = 0; c < consumers; c++) {
+            consumerThreads[c] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            Fetcher.FetchItem item = queue.take();
+                            taken.put(item.datum.url(), Boolean.TRUE);
+                            consumed.countDown();
+                        }
+                    } catch (InterruptedException ex) {
+                    }
+                }
+            };
+            consumerThreads[c].start();
+        }
+
+        consumed.await();
+        for (Thread consumerThread : consumerThreads) {
+            consumerThread.interrupt();
+        }
+        assertEquals(producers * itemsPerProducer, taken.size());
+        assertEquals(0, queue.getSize());
+    }
+
+    @Test
+    public void testHostFetchQueue() throws Exception {
+        HostFetchQueue queue = new HostFetchQueue(10, 1, 200);
+        queue.put(new Fetcher.FetchItem(new CrawlDatum("http://a.com/1")));
+        queue.put(new Fetcher.FetchItem(new CrawlDatum("http://a.com:8080/2")));
+        queue.put(new Fetcher.FetchItem(new CrawlDatum("http://b.com/1")));
+        assertEquals(2, queue.getHostCount());
+
+        Fetcher.FetchItem first = queue.take();
+        Fetcher.FetchItem second = queue.take();
+        assertEquals("a.com", UrlUtils.hostOf(first.datum.url()));
+        assertEquals("b.com", UrlUtils.hostOf(second.datum.url()));
+        // a.com正在执行，并发数已满
+        assertNull(queue.poll());
+
+        long start = System.currentTimeMillis();
+        queue.done(first);
+        Fetcher.FetchItem third = queue.take();
+        assertEquals("http://a.com:8080/2", third.datum.url());
+        assertTrue(System.currentTimeMillis() - start >= 150);
+
+        queue.done(second);
+        queue.done(third);
+        // a.com的请求间隔还未过去，暂时保留
+        assertEquals(1, queue.getHostCount());
+        Thread.sleep(250);
+        // 空闲的a.com到期后被移除
+        queue.put(new Fetcher.FetchItem(new CrawlDatum("http://c.com/1")));
+        assertEquals(1, queue.getHostCount());
+        queue.done(queue.take());
+
+        queue.finish();
+        assertNull(queue.take());
+        assertEquals(4, queue.getTotalSize());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import cn.edu.hfut.dmic.webcollector.conf.Configuration;
+import cn.edu.hfut.dmic.webcollector.crawldb.DBManager;
+import cn.edu.hfut.dmic.webcollector.crawldb.Generator;
+import cn.edu.hfut.dmic.webcollector.crawldb.StatusGeneratorFilter;
+import cn.edu.hfut.dmic.webcollector.fetcher.Executor;
+import cn.edu.hfut.dmic.webcollector.fetcher.Fetcher;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
+import cn.edu.hfut.dmic.webcollector.plugin.ram.RamDB;
+import cn.edu.hfut.dmic.webcollector.plugin.ram.RamDBManager;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 基于RamDBManager测试持续爬取模式
+ *
+ * @author hu
+ */
+public class FetcherTest {
+
+    /**
+     * 每个页面产生children个子链接，记录每个url被执行的次数
+     */
+    private static class TreeExecutor implements Executor {
+
+        private final int children;
+        private final ConcurrentHashMap<String, AtomicInteger> executed = new ConcurrentHashMap<String, AtomicInteger>();
+
+        public TreeExecutor(int children) {
+            this.children = children;
+        }
+
+        @Override
+        public void execute(CrawlDatum datum, CrawlDatums next) throws Exception {
+            AtomicInteger count = executed.putIfAbsent(datum.url(), new AtomicInteger(1));
+            if (count != null) {
+                count.incrementAndGet();
+            }
+            for (int i = 0; i < children; i++) {
+                next.add(datum.url() + "/" + i);
+            }
+        }
+
+        public void assertExecutedOnce() {
+            for (AtomicInteger count : executed.values()) {
+                assertEquals(1, count.get());
+            }
+        }
+    }
+
+    private static Fetcher createFetcher(DBManager dbManager, Executor executor, Configuration conf, int maxDepth) {
+        Fetcher fetcher = new Fetcher();
+        fetcher.setConf(conf);
+        fetcher.setDBManager(dbManager);
+        fetcher.setExecutor(executor);
+        fetcher.setThreads(4);
+        fetcher.setContinuous(true);
+        fetcher.setMaxDepth(maxDepth);
+        return fetcher;
+    }
+
+    private static RamDBManager createDBManager(Configuration conf) throws Exception {
+        RamDBManager dbManager = new RamDBManager(new RamDB());
+        dbManager.setConf(conf);
+        dbManager.inject(new CrawlDatum("http://a.com/0"));
+        return dbManager;
+    }
+
+    /**
+     * 合并后检查crawldb中未执行的任务，它们的跳数都应等于maxDepth
+     *
+     * @return 未执行的任务数
+     */
+    private static int countUnexecuted(DBManager dbManager, TreeExecutor executor, int maxDepth) throws Exception {
+        dbManager.merge();
+        Generator generator = dbManager.createGenerator(new StatusGeneratorFilter());
+        int count = 0;
+        CrawlDatum datum;
+        while ((datum = generator.next()) != null) {
+            assertEquals(maxDepth, datum.metaAsInt(Fetcher.META_KEY_HOP));
+            assertNull(executor.executed.get(datum.url()));
+            count++;
+        }
+        generator.close();
+        return count;
+    }
+
+    @Test(timeout = 30000)
+    public void testMaxDepth() throws Exception {
+        Configuration conf = Configuration.copyDefault();
+        RamDBManager dbManager = createDBManager(conf);
+        TreeExecutor executor = new TreeExecutor(2);
+
+        // frontier和inFlightKeys都为空后feeder结束，fetchAll返回
+        Fetcher fetcher = createFetcher(dbManager, executor, conf, 3);
+        assertEquals(7, fetcher.fetchAll(new StatusGeneratorFilter()));
+        assertFalse(fetcher.isOverflowed());
+
+        // 跳数为0、1、2的页面被抓取，跳数为3的链接只写入crawldb
+        assertEquals(7, executor.executed.size());
+        executor.assertExecutedOnce();
+        assertEquals(8, countUnexecuted(dbManager, executor, 3));
+    }
+
+    @Test(timeout = 30000)
+    public void testOverflow() throws Exception {
+        // 抓取队列和frontier最多容纳3个链接，种子的10个子链接必然溢出
+        Configuration conf = Configuration.copyDefault()
+                .setContinuousFrontierSize(1)
+                .setFetchQueueSize(1);
+        RamDBManager dbManager = createDBManager(conf);
+        TreeExecutor executor = new TreeExecutor(10);
+
+        Fetcher fetcher = createFetcher(dbManager, executor, conf, 2);
+        fetcher.fetchAll(new StatusGeneratorFilter());
+        assertTrue(fetcher.isOverflowed());
+        assertTrue(executor.executed.size() < 11);
+
+        // 与Crawler相同，溢出时再执行一轮，溢出的链接由生成器生成
+        int rounds = 1;
+        while (fetcher.isOverflowed()) {
+            assertTrue(rounds < 10);
+            fetcher = createFetcher(dbManager, executor, conf, 2);
+            assertTrue(fetcher.fetchAll(new StatusGeneratorFilter()) > 0);
+            rounds++;
+        }
+
+        assertEquals(11, executor.executed.size());
+        executor.assertExecutedOnce();
+        assertEquals(100, countUnexecuted(dbManager, executor, 2));
+    }
+}
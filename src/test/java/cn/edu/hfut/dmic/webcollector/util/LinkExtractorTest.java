@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author hu
+ */
+public class LinkExtractorTest {
+
+    @Test
+    public void testSameAsJsoup() {
+        String baseUri = "http://www.test.com/a/b/page.html";
+        String html = "<html><head><title>t <a href=/intitle></title>"
+                + "<script>var s='<a href=/inscript>';</script></head><body>"
+                + "<!-- <a href=/comment> -->"
+                + "<A HREF='rel/y'>y</A><a href=\"/x?a=1&amp;b=2\">x</a><a href=z.html>z</a>"
+                + "<a href=/dup href=/dup2></a><a data-href=/no href=\"../up\"></a>"
+                + "<img src=\"/i.png\"><iframe src=/f.html><a href=/iniframe></iframe>"
+                + "<base href=\"http://other.com/dir/\"><a href=\"//cdn.com/p\"></a>"
+                + "</body></html>";
+        Document doc = Jsoup.parse(html, baseUri);
+
+        ArrayList<String> hrefs = new ArrayList<String>();
+        ArrayList<String> srcs = new ArrayList<String>();
+        LinkExtractor.extract(html, baseUri, hrefs, srcs);
+        assertEquals(doc.select("a[href]").eachAttr("abs:href"), hrefs);
+        assertEquals(doc.select("*[src]").eachAttr("abs:src"), srcs);
+    }
+}
@@ -7,6 +7,7 @@ import com.google.gson.JsonObject;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class MetaTest {
 
@@ -47,4 +48,25 @@ public class MetaTest {
         }
 
     }
+
+    @Test
+    public void testMetaView(){
+        CrawlDatum datum = new CrawlDatum("http://a.com/");
+        assertEquals(0, datum.metaSize());
+        assertNull(datum.meta("missing"));
+
+        datum.meta("depth", 2).meta("referer", "http://b.com/");
+        JsonObject copy = datum.copyMeta();
+        copy.addProperty("depth", 100);
+        assertEquals(2, datum.metaAsInt("depth"));
+
+        // 通过meta()得到的JsonObject修改后对datum可见
+        JsonObject view = datum.meta();
+        assertEquals("http://b.com/", view.get("referer").getAsString());
+        view.addProperty("depth", 3);
+        datum.meta("title", "t");
+        assertEquals(3, datum.metaAsInt("depth"));
+        assertEquals("t", view.get("title").getAsString());
+        assertEquals(3, datum.metaSize());
+    }
 }
@@ -1,9 +1,15 @@
 package cn.edu.hfut.dmic.webcollector.util;
 
+import cn.edu.hfut.dmic.webcollector.conf.Configuration;
 import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
 import cn.edu.hfut.dmic.webcollector.model.Page;
 import cn.edu.hfut.dmic.webcollector.plugin.net.OkHttpRequester;
+import okhttp3.Dispatcher;
 import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicReference;
 import static org.junit.Assert.*;
 
 public class OkHttpRequesterTest {
@@ -20,4 +26,54 @@ public class OkHttpRequesterTest {
         }
 
     }
+
+    static class InspectableRequester extends OkHttpRequester {
+        Dispatcher dispatcher() {
+            return client.dispatcher();
+        }
+    }
+
+    @Test
+    public void testSetConfRebuildsDispatcher() {
+        InspectableRequester requester = new InspectableRequester();
+        // 默认每个host最多5个并发请求
+        assertEquals(5, requester.dispatcher().getMaxRequestsPerHost());
+        requester.setConf(Configuration.copyDefault().setMaxInFlight(8).setHostMaxConcurrency(2));
+        assertEquals(8, requester.dispatcher().getMaxRequests());
+        assertEquals(2, requester.dispatcher().getMaxRequestsPerHost());
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelAll() throws Exception {
+        // 接受连接但不返回响应，请求阻塞在读取响应上，不响应中断
+        final ServerSocket serverSocket = new ServerSocket(0);
+        try {
+            final String url = "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+            final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        requester.getResponse(url);
+                    } catch (Exception ex) {
+                        failure.set(ex);
+                    }
+                }
+            };
+            thread.start();
+            Socket socket = serverSocket.accept();
+            Thread.sleep(200);
+            thread.interrupt();
+            Thread.sleep(200);
+            assertTrue(thread.isAlive());
+
+            requester.cancelAll();
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+            assertNotNull(failure.get());
+            socket.close();
+        } finally {
+            serverSocket.close();
+        }
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import org.junit.Test;
+
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author hu
+ */
+public class RegexRuleTest {
+
+    private static final String[] URLS = {
+            "http://a.com/news/1.html",
+            "http://a.com/news/1.jpg",
+            "http://a.com/blog/2.html",
+            "http://b.com/news/3.html",
+            "http://a.com/",
+            "abab",
+            "abba"
+    };
+
+    private static RegexRule createRule() {
+        return new RegexRule()
+                .addRule("http://a.com/news/.*")
+                .addRule("+http://a.com/blog/.*")
+                .addRule("-.*\\.jpg")
+                .addRule("(ab)\\1");
+    }
+
+    @Test
+    public void testNegativeWins() {
+        RegexRule regexRule = createRule();
+        assertTrue(regexRule.satisfy("http://a.com/news/1.html"));
+        assertTrue(regexRule.satisfy("http://a.com/blog/2.html"));
+        // 同时匹配正正则和反正则
+        assertFalse(regexRule.satisfy("http://a.com/news/1.jpg"));
+        assertFalse(regexRule.satisfy("http://b.com/news/3.html"));
+        assertFalse(new RegexRule().satisfy("http://a.com/"));
+    }
+
+    @Test
+    public void testCombinePositive() {
+        RegexRule separate = createRule().addRule("-http://a.com/");
+        RegexRule combined = createRule().addRule("-http://a.com/").setCombinePositive(true);
+        for (String url : URLS) {
+            assertTrue(url, separate.satisfy(url) == combined.satisfy(url));
+        }
+
+        // 不含反向引用时合并为一个正则
+        RegexRule noBackReference = new RegexRule("http://a.com/news/.*", "http://a.com/blog/.*", "-.*\\.jpg")
+                .setCombinePositive(true);
+        RegexRule noBackReferenceSeparate = new RegexRule("http://a.com/news/.*", "http://a.com/blog/.*", "-.*\\.jpg");
+        for (String url : URLS) {
+            assertTrue(url, noBackReference.satisfy(url) == noBackReferenceSeparate.satisfy(url));
+        }
+    }
+
+    @Test
+    public void testCombineFallback() {
+        // 反向引用的编号在合并后会改变，逐条匹配
+        RegexRule backReference = new RegexRule("x(y)", "(ab)\\1").setCombinePositive(true);
+        assertTrue(backReference.satisfy("abab"));
+        assertFalse(backReference.satisfy("abba"));
+        assertTrue(backReference.satisfy("xy"));
+
+        RegexRule namedBackReference = new RegexRule("x(?<g>y)", "(?<h>ab)\\k<h>").setCombinePositive(true);
+        assertTrue(namedBackReference.satisfy("abab"));
+        assertFalse(namedBackReference.satisfy("abba"));
+
+        // 同名的命名分组无法合并为一个正则
+        RegexRule duplicateGroup = new RegexRule("(?<id>\\d+)\\.html", "(?<id>\\d+)\\.htm").setCombinePositive(true);
+        assertTrue(duplicateGroup.satisfy("12.html"));
+        assertTrue(duplicateGroup.satisfy("12.htm"));
+        assertFalse(duplicateGroup.satisfy("12.jpg"));
+    }
+
+    @Test
+    public void testInvalidRuleFailsOnAdd() {
+        RegexRule regexRule = new RegexRule();
+        try {
+            regexRule.addRule("http://a.com/(");
+            fail();
+        } catch (PatternSyntaxException ex) {
+        }
+        try {
+            regexRule.addRule("-[a");
+            fail();
+        } catch (PatternSyntaxException ex) {
+        }
+        assertTrue(regexRule.isEmpty());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017 hu
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package cn.edu.hfut.dmic.webcollector.util;
+
+import cn.edu.hfut.dmic.webcollector.fetcher.Visitor;
+import cn.edu.hfut.dmic.webcollector.fetcher.VisitorMethodDispatcher;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatum;
+import cn.edu.hfut.dmic.webcollector.model.CrawlDatums;
+import cn.edu.hfut.dmic.webcollector.model.Page;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author hu
+ */
+public class VisitorMethodDispatcherTest {
+
+    public static class RecordVisitor implements Visitor {
+
+        public List<String> calls = new ArrayList<String>();
+
+        @BeforeVisit
+        public void before(Page page, CrawlDatums next) {
+            calls.add("before");
+        }
+
+        @AfterParse
+        public void after(Page page, CrawlDatums next) {
+            calls.add("after");
+        }
+
+        @MatchCode(codes = {404})
+        public void visitNotFound(Page page, CrawlDatums next) {
+            calls.add("code");
+        }
+
+        @MatchType(types = {"list"})
+        public void visitList(Page page, CrawlDatums next) {
+            calls.add("type");
+        }
+
+        @MatchUrl(urlRegex = ".*/news/.*")
+        public void visitNews(Page page, CrawlDatums next) {
+            calls.add("news");
+        }
+
+        // 与visitNews同时匹配时，按方法名排序在前
+        @MatchUrl(urlRegex = ".*/news/1\\.html")
+        public void aVisitFirstNews(Page page, CrawlDatums next) {
+            calls.add("firstNews");
+        }
+
+        @MatchUrlRegexRule(urlRegexRule = {".*/blog/.*", "-.*\\.jpg"})
+        public void visitBlog(Page page, CrawlDatums next) {
+            calls.add("blog");
+        }
+
+        @MatchUrl(urlRegex = ".*/error")
+        public void visitError(Page page, CrawlDatums next) {
+            throw new IllegalStateException("visit error");
+        }
+
+        @Override
+        public void visit(Page page, CrawlDatums next) {
+            calls.add("visit");
+        }
+    }
+
+    private static List<String> dispatch(String url, String type, int code) throws Exception {
+        RecordVisitor visitor = new RecordVisitor();
+        VisitorMethodDispatcher dispatcher = new VisitorMethodDispatcher(visitor, false, new RegexRule());
+        CrawlDatum datum = new CrawlDatum(url).type(type).code(code);
+        dispatcher.dispatch(new Page(datum, "text/html", new byte[0]), new CrawlDatums());
+        return visitor.calls;
+    }
+
+    @Test
+    public void testDispatchOrder() throws Exception {
+        // code -> type -> MatchUrl -> MatchUrlRegexRule -> visit
+        assertEquals(Arrays.asList("before", "code", "after"), dispatch("http://a.com/news/1.html", "list", 404));
+        assertEquals(Arrays.asList("before", "type", "after"), dispatch("http://a.com/news/1.html", "list", 200));
+        assertEquals(Arrays.asList("before", "firstNews", "after"), dispatch("http://a.com/news/1.html", null, 200));
+        assertEquals(Arrays.asList("before", "news", "after"), dispatch("http://a.com/news/2.html", null, 200));
+        assertEquals(Arrays.asList("before", "blog", "after"), dispatch("http://a.com/blog/1.html", null, 200));
+        assertEquals(Arrays.asList("before", "visit", "after"), dispatch("http://a.com/blog/1.jpg", null, 200));
+        assertEquals(Arrays.asList("before", "visit", "after"), dispatch("http://a.com/", "detail", 200));
+    }
+
+    @Test
+    public void testAnonymousVisitor() throws Exception {
+        final List<String> calls = new ArrayList<String>();
+        Visitor visitor = new Visitor() {
+            @MatchNullType
+            public void visitNullType(Page page, CrawlDatums next) {
+                calls.add("nullType");
+            }
+
+            @Override
+            public void visit(Page page, CrawlDatums next) {
+                calls.add("visit");
+            }
+        };
+        VisitorMethodDispatcher dispatcher = new VisitorMethodDispatcher(visitor, false, new RegexRule());
+        dispatcher.dispatch(new Page(new CrawlDatum("http://a.com/"), "text/html", new byte[0]), new CrawlDatums());
+        dispatcher.dispatch(new Page(new CrawlDatum("http://a.com/").type("list"), "text/html", new byte[0]), new CrawlDatums());
+        assertEquals(Arrays.asList("nullType", "visit"), calls);
+    }
+
+    @Test
+    public void testVisitorException() throws Exception {
+        try {
+            dispatch("http://a.com/error", null, 200);
+            fail();
+        } catch (InvocationTargetException ex) {
+            assertSame(IllegalStateException.class, ex.getCause().getClass());
+            assertEquals("visit error", ex.getCause().getMessage());
+        }
+    }
+}